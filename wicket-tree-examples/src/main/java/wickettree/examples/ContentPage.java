@@ -20,12 +20,15 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
 import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.markup.html.IHeaderResponse;
 import org.apache.wicket.markup.html.form.Button;
 import org.apache.wicket.markup.html.form.ChoiceRenderer;
 import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IDetachable;
@@ -45,10 +48,11 @@ import wickettree.examples.content.MixedContent;
 import wickettree.examples.content.MultiLineLabelContent;
 import wickettree.examples.content.MultiSelectableFolderContent;
 import wickettree.examples.content.PanelContent;
+import wickettree.examples.content.RangeSelectableFolderContent;
 import wickettree.examples.content.SelectableFolderContent;
 import wickettree.theme.HumanTheme;
 import wickettree.theme.WindowsTheme;
-import wickettree.util.InverseSet;
+import wickettree.util.BreadthFirstExpansion;
 import wickettree.util.ProviderSubset;
 
 /**
@@ -67,8 +71,12 @@ public abstract class ContentPage extends ExamplePage
 
 	private Set<Foo> state = new ProviderSubset<Foo>(provider);
 
+	private BreadthFirstExpansion<Foo> expansion = new BreadthFirstExpansion<Foo>(provider, 10);
+
 	private Content content;
 
+	private String search;
+
 	private List<Content> contents;
 
 	private List<ResourceReference> themes;
@@ -117,26 +125,58 @@ public abstract class ContentPage extends ExamplePage
 			}
 		});
 
-		form.add(new Link<Void>("expandAll")
+		form.add(new AjaxLink<Void>("expandAll")
 		{
 			@Override
-			public void onClick()
+			public void onClick(AjaxRequestTarget target)
 			{
-				((IDetachable)state).detach();
-				state = new InverseSet<Foo>(new ProviderSubset<Foo>(provider));
+				expansion.start();
+
+				expand(target);
 			}
 		});
 
+		form.add(new AjaxLink<Void>("continueExpand")
+		{
+			@Override
+			public void onClick(AjaxRequestTarget target)
+			{
+				expand(target);
+			}
+
+			@Override
+			protected void onConfigure()
+			{
+				super.onConfigure();
+
+				setVisible(expansion.isRunning());
+			}
+		}.setOutputMarkupPlaceholderTag(true));
+
 		form.add(new Link<Void>("collapseAll")
 		{
 			@Override
 			public void onClick()
 			{
+				expansion.stop();
+
 				((IDetachable)state).detach();
 				state = new ProviderSubset<Foo>(provider);
 			}
 		});
 
+		form.add(new TextField<String>("search", new PropertyModel<String>(this, "search")));
+		form.add(new Button("reveal")
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void onSubmit()
+			{
+				((WicketApplication)getApplication()).getIndex().reveal(search, 100, tree);
+			}
+		});
+
 		form.add(new Button("submit")
 		{
 			private static final long serialVersionUID = 1L;
@@ -148,6 +188,21 @@ public abstract class ContentPage extends ExamplePage
 		});
 	}
 
+	/**
+	 * Expand the next nodes breadth-first - expanding all nodes at once would
+	 * require all of them to be rendered in a single request. Each node is
+	 * expanded on its own, so only the rows of its branch are updated.
+	 */
+	private void expand(AjaxRequestTarget target)
+	{
+		for (Foo foo : expansion.next())
+		{
+			tree.expand(foo);
+		}
+
+		target.add(get("form:continueExpand"));
+	}
+
 	private IModel<Set<Foo>> newStateModel()
 	{
 		return new AbstractReadOnlyModel<Set<Foo>>()
@@ -184,6 +239,7 @@ public abstract class ContentPage extends ExamplePage
 		contents.add(new MultiSelectableFolderContent(provider));
 		contents.add(new CheckedFolderContent(provider));
 		contents.add(new CheckedSelectableFolderContent(provider));
+		contents.add(new RangeSelectableFolderContent());
 		contents.add(new PanelContent());
 		contents.add(new MixedContent(contents));
 
@@ -212,6 +268,8 @@ public abstract class ContentPage extends ExamplePage
 			content.detach();
 		}
 
+		expansion.detach();
+
 		super.detachModels();
 	}
 
@@ -16,6 +16,7 @@
 package wickettree.examples;
 
 import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
 
 /**
  * @author Sven Meier
@@ -25,4 +26,12 @@ public abstract class ExamplePage extends WebPage
 
 	private static final long serialVersionUID = 1L;
 
+	public ExamplePage()
+	{
+	}
+
+	public ExamplePage(PageParameters parameters)
+	{
+		super(parameters);
+	}
 }
\ No newline at end of file
@@ -34,8 +34,6 @@ public class Foo
 	private String baz;
 
 	private boolean quux;
-	
-	private boolean loaded;
 
 	private Foo parent;
 
@@ -123,13 +121,4 @@ public class Foo
 	{
 		return id;
 	}
-	
-	public boolean isLoaded() {
-		return loaded;
-	}
-	
-	public void setLoaded(boolean loaded)
-	{
-		this.loaded = loaded;
-	}
 }
@@ -17,7 +17,6 @@ package wickettree.examples;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -25,8 +24,8 @@ import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 
-import wickettree.ITreeProvider;
-import wickettree.util.IntermediateTreeProvider;
+import wickettree.IKeyingTreeProvider;
+import wickettree.IParentTreeProvider;
 
 /**
  * A provider of {@link Foo}s.
@@ -37,10 +36,11 @@ import wickettree.util.IntermediateTreeProvider;
  * variables.
  * 
  * @see #model(Foo)
+ * @see #key(Foo)
  * 
  * @author Sven Meier
  */
-public class FooProvider implements ITreeProvider<Foo>
+public class FooProvider implements IKeyingTreeProvider<Foo>, IParentTreeProvider<Foo>
 {
 
 	private static final long serialVersionUID = 1L;
@@ -95,22 +95,6 @@ public class FooProvider implements ITreeProvider<Foo>
 		roots.add(fooC);
 	}
 
-	private boolean intermediate;
-
-	public FooProvider()
-	{
-		this(false);
-	}
-
-	/**
-	 * @param intermediate
-	 *            are intermediate children allowed.
-	 */
-	public FooProvider(boolean intermediate)
-	{
-		this.intermediate = intermediate;
-	}
-
 	/**
 	 * Nothing to do.
 	 */
@@ -128,56 +112,16 @@ public class FooProvider implements ITreeProvider<Foo>
 		return foo.getParent() == null || !foo.getFoos().isEmpty();
 	}
 
-	public Iterator<Foo> getChildren(final Foo foo)
+	public Iterator<Foo> getChildren(Foo foo)
 	{
-		if (intermediate)
-		{
-			if (!foo.isLoaded())
-			{
-				asynchronuous(new Runnable()
-				{
-					public void run()
-					{
-						foo.setLoaded(true);
-					}
-				});
-
-				// mark children intermediate
-				return IntermediateTreeProvider.intermediate(Collections.<Foo> emptyList()
-						.iterator());
-			}
-		}
-
 		return foo.getFoos().iterator();
 	}
 
-	/**
-	 * We're cheating here - the given runnable is run immediately.
-	 */
-	private void asynchronuous(Runnable runnable)
+	public Foo getParent(Foo foo)
 	{
-		runnable.run();
+		return foo.getParent();
 	}
 
-
-	public static void resetLoaded()
-	{
-		for (Foo foo : roots)
-		{
-			resetLoaded(foo);
-		}
-	}
-
-	private static void resetLoaded(Foo foo)
-	{
-		foo.setLoaded(false);
-
-		for (Foo child : foo.getFoos())
-		{
-			resetLoaded(child);
-		}
-	}
-	
 	/**
 	 * Creates a {@link FooModel}.
 	 */
@@ -187,11 +131,33 @@ public class FooProvider implements ITreeProvider<Foo>
 	}
 
 	/**
-	 * Get a {@link Foo} by its id.
+	 * Identifies a {@link Foo} by its id, the same as {@link FooModel}.
+	 */
+	public Object key(Foo foo)
+	{
+		return foo.getId();
+	}
+
+	/**
+	 * Get a {@link Foo} by its id - since the ids of all ancestors are
+	 * prefixes of the id, only the path to the foo is searched.
 	 */
 	public static Foo get(String id)
 	{
-		return get(roots, id);
+		Foo foo = null;
+
+		List<Foo> foos = roots;
+		for (int length = 1; length <= id.length(); length++)
+		{
+			foo = get(foos, id.substring(0, length));
+			if (foo == null)
+			{
+				break;
+			}
+			foos = foo.getFoos();
+		}
+
+		return foo;
 	}
 
 	private static Foo get(List<Foo> foos, String id)
@@ -202,12 +168,6 @@ public class FooProvider implements ITreeProvider<Foo>
 			{
 				return foo;
 			}
-
-			Foo temp = get(foo.getFoos(), id);
-			if (temp != null)
-			{
-				return temp;
-			}
 		}
 
 		return null;
@@ -15,10 +15,13 @@
  */
 package wickettree.examples;
 
+import java.util.Iterator;
+
 import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.util.time.Duration;
 
 import wickettree.DefaultNestedTree;
+import wickettree.util.AsynchronousTreeProvider;
 import wickettree.util.IntermediateTreeProvider;
 
 /**
@@ -29,7 +32,8 @@ public class IntermediatePage extends ExamplePage
 
 	private static final long serialVersionUID = 1L;
 
-	private FooProvider provider = new FooProvider(true);
+	private AsynchronousTreeProvider<Foo> provider = new AsynchronousTreeProvider<Foo>(
+			new SlowFooProvider());
 
 	public IntermediatePage()
 	{
@@ -43,8 +47,31 @@ public class IntermediatePage extends ExamplePage
 			@Override
 			public void onClick()
 			{
-				FooProvider.resetLoaded();
+				provider.reset();
 			}
 		});
 	}
+
+	/**
+	 * A provider simulating a slow backend.
+	 */
+	private static class SlowFooProvider extends FooProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Iterator<Foo> getChildren(Foo foo)
+		{
+			try
+			{
+				Thread.sleep(1000);
+			}
+			catch (InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			return super.getChildren(foo);
+		}
+	}
 }
\ No newline at end of file
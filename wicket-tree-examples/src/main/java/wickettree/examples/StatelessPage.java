@@ -0,0 +1,70 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.examples;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
+import wickettree.DefaultNestedTree;
+import wickettree.StatelessNode;
+import wickettree.util.ParameterState;
+
+/**
+ * A stateless page, keeping the expansion state of its tree in the URL.
+ * 
+ * @author Sven Meier
+ */
+public class StatelessPage extends ExamplePage
+{
+
+	private static final long serialVersionUID = 1L;
+
+	public StatelessPage(PageParameters parameters)
+	{
+		super(parameters);
+
+		ParameterState<Foo> state = new ParameterState<Foo>("expanded")
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected String key(Foo foo)
+			{
+				return foo.getId();
+			}
+		}.read(parameters);
+
+		add(new DefaultNestedTree<Foo>("tree", new FooProvider(), state.createModel())
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Component newNodeComponent(String id, IModel<Foo> model)
+			{
+				return new StatelessNode<Foo>(id, this, model);
+			}
+
+			@Override
+			protected Component newContentComponent(String id, IModel<Foo> model)
+			{
+				return new Label(id, new PropertyModel<String>(model, "id"));
+			}
+		});
+	}
+}
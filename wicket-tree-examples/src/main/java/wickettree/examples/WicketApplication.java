@@ -18,21 +18,53 @@ package wickettree.examples;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.mapper.MountedMapper;
 
+import wickettree.util.TreeIndex;
+
 /**
  * @author Sven Meier
  */
 public class WicketApplication extends WebApplication {
+
+	/**
+	 * Index of all foos, shared by all pages.
+	 */
+	private TreeIndex<Foo> index;
+
 	public WicketApplication() {
 	}
 
+	/**
+	 * Get the index of all foos, built on first access.
+	 * 
+	 * @return index
+	 */
+	public synchronized TreeIndex<Foo> getIndex() {
+		if (index == null) {
+			index = new TreeIndex<Foo>(new FooProvider()) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected String getLabel(Foo foo) {
+					return foo.getId();
+				}
+			};
+			index.build();
+		}
+		return index;
+	}
+
 	@Override
 	protected void init() {
 		getRootRequestMapperAsCompound().add(
 				new MountedMapper("nested", NestedTreePage.class));
 		getRootRequestMapperAsCompound().add(
 				new MountedMapper("table", IntermediatePage.class));
+		getRootRequestMapperAsCompound().add(
+				new MountedMapper("virtual", VirtualTableTreePage.class));
 		getRootRequestMapperAsCompound().add(
 				new MountedMapper("intermediate", IntermediatePage.class));
+		getRootRequestMapperAsCompound().add(
+				new MountedMapper("stateless", StatelessPage.class));
 	}
 
 	public Class<NestedTreePage> getHomePage() {
@@ -38,9 +38,8 @@ public class BookmarkableFolderContent extends Content {
 				"foo").toString();
 		if (id != null) {
 			Foo foo = FooProvider.get(id);
-			while (foo != null) {
-				tree.getModel().getObject().add(foo);
-				foo = foo.getParent();
+			if (foo != null) {
+				tree.expandPath(foo);
 			}
 		}
 	}
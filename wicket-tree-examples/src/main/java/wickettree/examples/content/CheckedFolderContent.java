@@ -15,14 +15,21 @@
  */
 package wickettree.examples.content;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.IHeaderResponse;
 import org.apache.wicket.model.IModel;
 
 import wickettree.AbstractTree;
-import wickettree.ITreeProvider;
+import wickettree.IParentTreeProvider;
 import wickettree.content.CheckedFolder;
 import wickettree.examples.Foo;
-import wickettree.util.ProviderSubset;
+import wickettree.util.CheckedIndex;
+import wickettree.util.CheckedIndex.Checked;
 
 /**
  * @author Sven Meier
@@ -31,34 +38,22 @@ public class CheckedFolderContent extends Content
 {
 
 	private static final long serialVersionUID = 1L;
-	
-	private ProviderSubset<Foo> checked;
 
-	public CheckedFolderContent(ITreeProvider<Foo> provider)
-	{
-		checked = new ProviderSubset<Foo>(provider, false);
-	}
+	private CheckedIndex<Foo> checked;
 
-	public void detach()
+	public CheckedFolderContent(IParentTreeProvider<Foo> provider)
 	{
-		checked.detach();
+		checked = new CheckedIndex<Foo>(provider);
 	}
-	
-	protected boolean isChecked(Foo foo)
+
+	protected Checked getChecked(Foo foo)
 	{
-		return checked.contains(foo);
+		return checked.getChecked(foo);
 	}
 
-	protected void check(Foo foo, boolean check)
+	protected List<Foo> check(Foo foo, boolean check)
 	{
-		if (check)
-		{
-			checked.add(foo);
-		}
-		else
-		{
-			checked.remove(foo);
-		}
+		return checked.check(foo, check);
 	}
 
 	@Override
@@ -68,6 +63,33 @@ public class CheckedFolderContent extends Content
 		{
 			private static final long serialVersionUID = 1L;
 
+			/**
+			 * Ancestors changed by the last check.
+			 */
+			private List<Foo> changed = Collections.emptyList();
+
+			@Override
+			protected Component newCheckBox(String id, IModel<Foo> model)
+			{
+				Component checkBox = super.newCheckBox(id, model);
+				checkBox.setOutputMarkupId(true);
+				checkBox.add(new Behavior()
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public void renderHead(Component component, IHeaderResponse response)
+					{
+						if (getChecked(getModelObject()) == Checked.SOME)
+						{
+							response.renderOnDomReadyJavaScript("document.getElementById('" +
+								component.getMarkupId() + "').indeterminate = true;");
+						}
+					}
+				});
+				return checkBox;
+			}
+
 			@Override
 			protected IModel<Boolean> newCheckBoxModel(final IModel<Foo> model)
 			{
@@ -77,12 +99,12 @@ public class CheckedFolderContent extends Content
 
 					public Boolean getObject()
 					{
-						return isChecked(model.getObject());
+						return getChecked(model.getObject()) == Checked.ALL;
 					}
 
 					public void setObject(Boolean object)
 					{
-						check(model.getObject(), object);
+						changed = check(model.getObject(), object);
 					}
 
 					public void detach()
@@ -90,6 +112,18 @@ public class CheckedFolderContent extends Content
 					}
 				};
 			}
+
+			@Override
+			protected void onUpdate(AjaxRequestTarget target)
+			{
+				tree.updateBranch(getModelObject(), target);
+
+				for (Foo foo : changed)
+				{
+					tree.updateNode(foo, target);
+				}
+				changed = Collections.emptyList();
+			}
 		};
 	}
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.examples.content;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.IAjaxCallDecorator;
+import org.apache.wicket.ajax.calldecorator.AjaxCallDecorator;
+import org.apache.wicket.ajax.markup.html.AjaxFallbackLink;
+import org.apache.wicket.model.IModel;
+
+import wickettree.AbstractTree;
+import wickettree.TableTree;
+import wickettree.content.Folder;
+import wickettree.examples.Foo;
+import wickettree.table.RowSelection;
+
+/**
+ * Selection of rows in a {@link TableTree}, a click with pressed shift key
+ * selects a range of rows.
+ * 
+ * @author Sven Meier
+ */
+public class RangeSelectableFolderContent extends Content
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private RowSelection getSelection(TableTree<Foo> tree)
+	{
+		RowSelection selection = tree.getRowSelection();
+		if (selection == null)
+		{
+			selection = new RowSelection();
+			tree.setRowSelection(selection);
+		}
+		return selection;
+	}
+
+	protected boolean isSelected(Component component, AbstractTree<Foo> tree)
+	{
+		if (tree instanceof TableTree<?>)
+		{
+			TableTree<Foo> table = (TableTree<Foo>)tree;
+
+			return getSelection(table).isSelected(table.getRenderedRow(component));
+		}
+		return false;
+	}
+
+	protected void select(Foo foo, Component component, AbstractTree<Foo> tree,
+			boolean range, final AjaxRequestTarget target)
+	{
+		TableTree<Foo> table = (TableTree<Foo>)tree;
+		RowSelection selection = getSelection(table);
+
+		int row = table.getRenderedRow(component);
+		if (range)
+		{
+			int to = Math.max(row, selection.getAnchor());
+			int from = selection.selectRange(row);
+
+			table.updateRows(from, to + 1, target);
+		}
+		else
+		{
+			selection.toggle(row);
+
+			tree.updateNode(foo, target);
+		}
+	}
+
+	@Override
+	public Component newContentComponent(String id, final AbstractTree<Foo> tree, IModel<Foo> model)
+	{
+		return new Folder<Foo>(id, tree, model)
+		{
+			private static final long serialVersionUID = 1L;
+
+			/**
+			 * Clickable in tables only.
+			 */
+			@Override
+			protected boolean isClickable()
+			{
+				return tree instanceof TableTree<?>;
+			}
+
+			/**
+			 * Pass the state of the shift key.
+			 */
+			@Override
+			protected MarkupContainer newLinkComponent(String id, final IModel<Foo> model)
+			{
+				return new AjaxFallbackLink<Void>(id)
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public boolean isEnabled()
+					{
+						return isClickable();
+					}
+
+					@Override
+					public void onClick(AjaxRequestTarget target)
+					{
+						boolean range = getRequest().getRequestParameters()
+								.getParameterValue("shift").toBoolean(false);
+
+						RangeSelectableFolderContent.this.select(model.getObject(), this, tree,
+								range, target);
+					}
+
+					@Override
+					protected IAjaxCallDecorator getAjaxCallDecorator()
+					{
+						return new AjaxCallDecorator()
+						{
+							private static final long serialVersionUID = 1L;
+
+							@Override
+							public CharSequence decorateScript(Component c, CharSequence script)
+							{
+								return script.toString().replaceFirst("wicketAjaxGet\\('([^']*)'",
+										"wicketAjaxGet('$1&shift=' + event.shiftKey");
+							}
+						};
+					}
+				};
+			}
+
+			@Override
+			protected boolean isSelected()
+			{
+				return RangeSelectableFolderContent.this.isSelected(this, tree);
+			}
+		};
+	}
+}
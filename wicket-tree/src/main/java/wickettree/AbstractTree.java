@@ -15,19 +15,32 @@
  */
 package wickettree;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Page;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.markup.repeater.DefaultItemReuseStrategy;
+import org.apache.wicket.markup.repeater.IItemFactory;
 import org.apache.wicket.markup.repeater.IItemReuseStrategy;
 import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.RefreshingView;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.util.visit.IVisit;
 import org.apache.wicket.util.visit.IVisitor;
 
+import wickettree.util.Keys;
 import wickettree.util.ProviderSubset;
+import wickettree.util.TreePaths;
 
 /**
  * Abstract base class for {@link NestedTree} and {@link TableTree}. Uses its
@@ -36,7 +49,13 @@ import wickettree.util.ProviderSubset;
  * Note that a tree has no notion of a <em>selection</em>. Handling state of
  * nodes besides expanse/collapse is irrelevant to a tree implementation.
  * 
+ * By default changes of the state create a new version of the page as any
+ * other change does. With {@link #setStateVersioned(boolean)} set to
+ * <code>false</code> expanding or collapsing a node updates the page in place
+ * in the page store instead, so the back button skips these changes.
+ * 
  * @see #newContentComponent(String, IModel)
+ * @see #setStateVersioned(boolean)
  * 
  * @author Sven Meier
  */
@@ -48,6 +67,39 @@ public abstract class AbstractTree<T> extends Panel
 
 	private IItemReuseStrategy itemReuseStrategy;
 
+	/**
+	 * Key of a node stored in its item.
+	 */
+	private static final MetaDataKey<Serializable> NODE_KEY = new MetaDataKey<Serializable>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/**
+	 * Items of nodes by node key, kept current as items are added and removed.
+	 * Rebuilt on demand after deserialization.
+	 * 
+	 * @see #findComponent(Class, Object)
+	 * @see #newItemReuseStrategy()
+	 * @see Keys
+	 */
+	private transient Map<Object, Component> items;
+
+	private boolean stateVersioned = true;
+
+	/**
+	 * Has the state changed in the current request.
+	 */
+	private transient boolean stateChanged;
+
+	/**
+	 * Previous freeze of the page id, <code>null</code> if not frozen by this
+	 * tree.
+	 * 
+	 * @see Page#setFreezePageId(boolean)
+	 */
+	private transient Boolean frozen;
+
 	protected AbstractTree(String id, ITreeProvider<T> provider)
 	{
 		this(id, provider, null);
@@ -99,6 +151,43 @@ public abstract class AbstractTree<T> extends Panel
 		return itemReuseStrategy;
 	}
 
+	/**
+	 * Create a strategy for a repeater of node items: Items are created or
+	 * reused by {@link #getItemReuseStrategy()} and indexed by their node
+	 * model, so they can be found without visiting all components.
+	 * 
+	 * @return strategy
+	 * @see #findComponent(Class, Object)
+	 */
+	public IItemReuseStrategy newItemReuseStrategy()
+	{
+		return new IndexingStrategy();
+	}
+
+	/**
+	 * Should changes of the state create a new version of the page.
+	 * 
+	 * @param stateVersioned
+	 *            <code>true</code> to version changes of the state
+	 * @return this for chaining
+	 */
+	public AbstractTree<T> setStateVersioned(boolean stateVersioned)
+	{
+		this.stateVersioned = stateVersioned;
+
+		return this;
+	}
+
+	/**
+	 * Are changes of the state versioned.
+	 * 
+	 * @return defaults to <code>true</code>
+	 */
+	public boolean isStateVersioned()
+	{
+		return stateVersioned;
+	}
+
 	/**
 	 * Get the provider of the tree nodes.
 	 * 
@@ -162,19 +251,61 @@ public abstract class AbstractTree<T> extends Panel
 
 	/**
 	 * Expand the given node, tries to update the affected branch if the change
-	 * happens on an {@link AjaxRequestTarget}.
+	 * happens on an {@link AjaxRequestTarget}. If the provider is an
+	 * {@link IPrefetchingTreeProvider} it is notified of the expansion.
 	 * 
 	 * @see #getModelObject()
 	 * @see Set#add(Object)
 	 * @see #updateBranch(Object, AjaxRequestTarget)
+	 * @see IPrefetchingTreeProvider#prefetch(Object)
 	 */
 	public void expand(T t)
 	{
 		getModelObject().add(t);
 
+		if (provider instanceof IPrefetchingTreeProvider<?>)
+		{
+			((IPrefetchingTreeProvider<T>)provider).prefetch(t);
+		}
+
 		updateBranch(t, AjaxRequestTarget.get());
 	}
 
+	/**
+	 * Expand all ancestors of the given node, so it becomes visible. Tries to
+	 * update the affected branch if the change happens on an
+	 * {@link AjaxRequestTarget}.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the provider is not an {@link IParentTreeProvider}
+	 * @see TreePaths#getPath(IParentTreeProvider, Object)
+	 */
+	public void expandPath(T t)
+	{
+		if (!(provider instanceof IParentTreeProvider<?>))
+		{
+			throw new IllegalStateException("provider is not an IParentTreeProvider");
+		}
+
+		List<T> path = TreePaths.getPath((IParentTreeProvider<T>)provider, t);
+
+		T expanded = null;
+		Set<T> state = getModelObject();
+		for (int i = 0; i < path.size() - 1; i++)
+		{
+			T ancestor = path.get(i);
+			if (state.add(ancestor) && expanded == null)
+			{
+				expanded = ancestor;
+			}
+		}
+
+		if (expanded != null)
+		{
+			updateBranch(expanded, AjaxRequestTarget.get());
+		}
+	}
+
 	/**
 	 * Collapse the given node, tries to update the affected branch if the
 	 * change happens on an {@link AjaxRequestTarget}.
@@ -190,6 +321,71 @@ public abstract class AbstractTree<T> extends Panel
 		updateBranch(t, AjaxRequestTarget.get());
 	}
 
+	/**
+	 * Note a change of the state, so the re-rendering of this tree in the
+	 * current request does not create a new version of the page if changes of
+	 * the state are not versioned.
+	 * 
+	 * @see #isStateVersioned()
+	 * @see #updateBranch(Object, AjaxRequestTarget)
+	 */
+	void stateChanging()
+	{
+		stateChanged = true;
+	}
+
+	/**
+	 * Overriden to freeze the id of the page while this tree is configured and
+	 * re-rendered after a change of the state.
+	 * 
+	 * @see #stateChanging()
+	 */
+	@Override
+	protected void onConfigure()
+	{
+		if (stateChanged && !stateVersioned && frozen == null)
+		{
+			Page page = findPage();
+			if (page != null)
+			{
+				frozen = page.setFreezePageId(true);
+			}
+		}
+
+		super.onConfigure();
+	}
+
+	/**
+	 * Overriden to release a frozen page id once this tree and its children are
+	 * prepared for render, so changes of other components are versioned as
+	 * usual.
+	 */
+	@Override
+	protected void onBeforeRender()
+	{
+		try
+		{
+			super.onBeforeRender();
+		}
+		finally
+		{
+			unfreeze();
+		}
+	}
+
+	private void unfreeze()
+	{
+		if (frozen != null)
+		{
+			Page page = findPage();
+			if (page != null)
+			{
+				page.setFreezePageId(frozen);
+			}
+			frozen = null;
+		}
+	}
+
 	/**
 	 * Get the given node's {@link State}.
 	 * 
@@ -209,11 +405,15 @@ public abstract class AbstractTree<T> extends Panel
 	}
 
 	/**
-	 * Overriden to detach the {@link ITreeProvider}.
+	 * Overriden to detach the {@link ITreeProvider} and to release a frozen
+	 * page id if this tree was not rendered.
 	 */
 	@Override
 	protected void onDetach()
 	{
+		unfreeze();
+		stateChanged = false;
+
 		provider.detach();
 
 		super.onDetach();
@@ -248,11 +448,17 @@ public abstract class AbstractTree<T> extends Panel
 	 * 
 	 * This default implementation adds this whole component for rendering.
 	 * 
+	 * Call this method after changing the state directly on the model object,
+	 * so the change is not versioned unless {@link #isStateVersioned()}.
+	 * 
 	 * @param t
+	 *            node of the branch or <code>null</code> for all roots
 	 * @param target
 	 */
 	public void updateBranch(T t, final AjaxRequestTarget target)
 	{
+		stateChanging();
+
 		if (target != null)
 		{
 			target.add(this);
@@ -271,20 +477,198 @@ public abstract class AbstractTree<T> extends Panel
 	{
 		if (target != null)
 		{
-			final IModel<T> model = getProvider().model(t);
-			visitChildren(Node.class, new IVisitor<Node<T>, Void>()
+			Component node = findComponent(Node.class, t);
+			if (node != null)
+			{
+				target.add(node);
+			}
+		}
+	}
+
+	/**
+	 * Find the component of the given type for a node, either the node's item
+	 * itself or the first component of this type inside of it. The item is
+	 * looked up in constant time by the node's key.
+	 * 
+	 * @param type
+	 *            type of component
+	 * @param t
+	 *            node
+	 * @return component or <code>null</code> if not currently rendered
+	 * @see #getNodeModel(Component)
+	 * @see #newItemReuseStrategy()
+	 */
+	public <C extends Component> C findComponent(final Class<C> type, T t)
+	{
+		Component item = getItems().get(Keys.key(getProvider(), t));
+
+		if (item == null || type.isInstance(item))
+		{
+			return type.cast(item);
+		}
+
+		if (item instanceof MarkupContainer)
+		{
+			return ((MarkupContainer)item).visitChildren(type, new IVisitor<C, C>()
+			{
+				public void component(C component, IVisit<C> visit)
+				{
+					visit.stop(component);
+				}
+			});
+		}
+		return null;
+	}
+
+	/**
+	 * Index an item added for a node.
+	 * 
+	 * @see #newItemReuseStrategy()
+	 */
+	@SuppressWarnings("unchecked")
+	void index(Component item)
+	{
+		Object key = item.getMetaData(NODE_KEY);
+		if (key == null)
+		{
+			IModel<T> model = (IModel<T>)getNodeModel(item);
+			if (model == null)
+			{
+				return;
+			}
+
+			// keys are serializable as they are kept in the state too
+			key = Keys.key(getProvider(), model.getObject(), model);
+			item.setMetaData(NODE_KEY, (Serializable)key);
+		}
+		getItems().put(key, item);
+	}
+
+	/**
+	 * Remove a removed item and all items inside of it from the index.
+	 * 
+	 * @see #newItemReuseStrategy()
+	 */
+	void unindex(Component item)
+	{
+		if (items == null)
+		{
+			return;
+		}
+
+		unindexItem(item);
+
+		if (item instanceof MarkupContainer)
+		{
+			((MarkupContainer)item).visitChildren(Item.class, new IVisitor<Item<?>, Void>()
 			{
-				public void component(Node<T> node, IVisit<Void> visit)
+				public void component(Item<?> item, IVisit<Void> visit)
 				{
-					if (model.equals(node.getModel()))
+					if (!unindexItem(item))
 					{
-						target.add(node);
-						visit.stop();
+						// not a node, e.g. a cell
+						visit.dontGoDeeper();
 					}
-					visit.dontGoDeeper();
 				}
 			});
-			model.detach();
+		}
+	}
+
+	private boolean unindexItem(Component item)
+	{
+		Object key = item.getMetaData(NODE_KEY);
+		if (key != null && items.get(key) == item)
+		{
+			items.remove(key);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the model of the node the given component was created for.
+	 * 
+	 * @param component
+	 *            component to get node model for
+	 * @return the model or <code>null</code> if the component is not created
+	 *         for a node
+	 */
+	protected IModel<?> getNodeModel(Component component)
+	{
+		return component.getDefaultModel();
+	}
+
+	private Map<Object, Component> getItems()
+	{
+		if (items == null)
+		{
+			items = new HashMap<Object, Component>();
+
+			// after deserialization only
+			visitChildren(RefreshingView.class, new IVisitor<RefreshingView<?>, Void>()
+			{
+				public void component(RefreshingView<?> view, IVisit<Void> visit)
+				{
+					IItemReuseStrategy strategy = view.getItemReuseStrategy();
+					if (strategy instanceof AbstractTree<?>.IndexingStrategy &&
+						((AbstractTree<?>.IndexingStrategy)strategy).getTree() == AbstractTree.this)
+					{
+						Iterator<? extends Item<?>> iterator = view.getItems();
+						while (iterator.hasNext())
+						{
+							index(iterator.next());
+						}
+					}
+				}
+			});
+		}
+		return items;
+	}
+
+	/**
+	 * Strategy indexing items as they are added and removed.
+	 */
+	private class IndexingStrategy implements IItemReuseStrategy
+	{
+		private static final long serialVersionUID = 1L;
+
+		private AbstractTree<T> getTree()
+		{
+			return AbstractTree.this;
+		}
+
+		public <S> Iterator<Item<S>> getItems(IItemFactory<S> factory,
+				Iterator<IModel<S>> newModels, Iterator<Item<S>> existingItems)
+		{
+			List<Item<S>> existing = new ArrayList<Item<S>>();
+			while (existingItems.hasNext())
+			{
+				Item<S> item = existingItems.next();
+				unindex(item);
+				existing.add(item);
+			}
+
+			final Iterator<Item<S>> items = getItemReuseStrategy().getItems(factory, newModels,
+					existing.iterator());
+			return new Iterator<Item<S>>()
+			{
+				public boolean hasNext()
+				{
+					return items.hasNext();
+				}
+
+				public Item<S> next()
+				{
+					Item<S> item = items.next();
+					index(item);
+					return item;
+				}
+
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
 		}
 	}
 
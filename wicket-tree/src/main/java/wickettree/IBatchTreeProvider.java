@@ -0,0 +1,41 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import java.util.Iterator;
+import java.util.List;
+
+import wickettree.util.ChildrenBatch;
+
+/**
+ * Tree provider which is able to get the children of several nodes at once,
+ * e.g. with a single database query.
+ * 
+ * @see ChildrenBatch
+ * 
+ * @author Sven Meier
+ */
+public interface IBatchTreeProvider<T> extends ITreeProvider<T>
+{
+	/**
+	 * Get the children of all given objects.
+	 * 
+	 * @param objects
+	 *            objects to get children for
+	 * @return children of each object, in the order of the given objects
+	 */
+	List<Iterator<? extends T>> getChildren(List<T> objects);
+}
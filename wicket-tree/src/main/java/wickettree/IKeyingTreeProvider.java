@@ -0,0 +1,42 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import wickettree.util.ProviderSubset;
+
+/**
+ * Tree provider which is able to identify nodes by keys, so nodes can be
+ * looked up without creating a model.
+ * 
+ * @see ProviderSubset
+ * 
+ * @author Sven Meier
+ */
+public interface IKeyingTreeProvider<T> extends ITreeProvider<T>
+{
+	/**
+	 * Get the key of the given object.
+	 * 
+	 * Important! Keys must be equal if and only if the models of their objects
+	 * are equal.
+	 * 
+	 * @param object
+	 *            object to get key for
+	 * @return key
+	 * @see #model(Object)
+	 */
+	Object key(T object);
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import wickettree.util.TreePaths;
+
+/**
+ * Tree provider which is able to navigate from nodes to their parents, so
+ * paths and ancestry can be resolved without traversing the tree from its
+ * roots.
+ * 
+ * @see TreePaths
+ * @see AbstractTree#expandPath(Object)
+ * 
+ * @author Sven Meier
+ */
+public interface IParentTreeProvider<T> extends ITreeProvider<T>
+{
+	/**
+	 * Get the parent of the given object.
+	 * 
+	 * @param object
+	 *            object to get parent for
+	 * @return parent or <code>null</code> if the object is a root
+	 */
+	T getParent(T object);
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import wickettree.util.PrefetchingTreeProvider;
+
+/**
+ * Tree provider which is able to prefetch the descendants of nodes, so they
+ * are available when a user expands them.
+ * 
+ * @see AbstractTree#expand(Object)
+ * @see PrefetchingTreeProvider
+ * 
+ * @author Sven Meier
+ */
+public interface IPrefetchingTreeProvider<T> extends ITreeProvider<T>
+{
+	/**
+	 * Notification that the given object was expanded, thus its descendants
+	 * are likely to be needed soon.
+	 * 
+	 * @param object
+	 *            expanded object
+	 */
+	void prefetch(T object);
+}
@@ -17,9 +17,15 @@ package wickettree;
 
 import org.apache.wicket.extensions.markup.html.repeater.data.sort.ISortStateLocator;
 
+import wickettree.util.CompoundSortState;
+import wickettree.util.SortableTreeProvider;
+
 /**
  * Tree provider that can hold sort state
  * 
+ * @see SortableTreeProvider
+ * @see CompoundSortState
+ * 
  * @author Sven Meier
  */
 public interface ISortableTreeProvider<T> extends ITreeProvider<T>, ISortStateLocator
@@ -15,17 +15,17 @@
  */
 package wickettree;
 
+import java.util.Iterator;
 import java.util.Set;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
-import org.apache.wicket.util.visit.IVisit;
-import org.apache.wicket.util.visit.IVisitor;
 
 import wickettree.nested.BranchItem;
 import wickettree.nested.Subtree;
+import wickettree.util.ChildrenBatch;
 
 /**
  * A tree with nested markup.
@@ -37,6 +37,8 @@ public abstract class NestedTree<T> extends AbstractTree<T>
 
 	private static final long serialVersionUID = 1L;
 
+	private final ChildrenBatch<T> children;
+
 	public NestedTree(String id, ITreeProvider<T> provider)
 	{
 		this(id, provider, null);
@@ -46,9 +48,53 @@ public abstract class NestedTree<T> extends AbstractTree<T>
 	{
 		super(id, provider, state);
 
+		children = new ChildrenBatch<T>(provider)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean isExpanded(T t)
+			{
+				return getState(t) == State.EXPANDED;
+			}
+		};
+
 		add(newSubtree("subtree", new RootsModel()));
 	}
 
+	/**
+	 * Get the children of the given node. If the provider is an
+	 * {@link IBatchTreeProvider}, the children of all expanded descendants are
+	 * fetched too, level by level.
+	 * 
+	 * @param t
+	 *            node to get children for or <code>null</code> for the roots
+	 * @return children
+	 * @see Subtree
+	 */
+	public Iterator<? extends T> getChildren(T t)
+	{
+		if (t == null)
+		{
+			return children.fetch(getProvider().getRoots(), Integer.MAX_VALUE);
+		}
+		else
+		{
+			return children.fetch(children.getChildren(t), Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Overriden to forget fetched children.
+	 */
+	@Override
+	protected void onDetach()
+	{
+		children.detach();
+
+		super.onDetach();
+	}
+
 	/**
 	 * Create a new subtree.
 	 * 
@@ -68,22 +114,19 @@ public abstract class NestedTree<T> extends AbstractTree<T>
 	@Override
 	public void updateBranch(T t, final AjaxRequestTarget target)
 	{
-		if (target != null)
+		stateChanging();
+
+		if (t == null)
+		{
+			super.updateBranch(t, target);
+		}
+		else if (target != null)
 		{
-			final IModel<T> model = getProvider().model(t);
-			visitChildren(BranchItem.class, new IVisitor<BranchItem<T>, Void>()
+			Component branch = findComponent(BranchItem.class, t);
+			if (branch != null)
 			{
-				public void component(BranchItem<T> branch,
-						IVisit<Void> visit)
-				{
-					if (model.equals(branch.getModel()))
-					{
-						target.add(branch);
-						visit.stop();
-					}
-				}
-			});
-			model.detach();
+				target.add(branch);
+			}
 		}
 	}
 
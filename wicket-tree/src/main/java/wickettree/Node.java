@@ -31,6 +31,7 @@ import wickettree.AbstractTree.State;
  * {@link AjaxFallbackLink} for its junction component.
  * 
  * @see #createJunctionComponent(String)
+ * @see StatelessNode
  * 
  * @author Sven Meier
  */
@@ -64,6 +65,16 @@ public abstract class Node<T> extends Panel
 		add(content);
 	}
 
+	/**
+	 * Get the tree of this node.
+	 * 
+	 * @return tree
+	 */
+	public AbstractTree<T> getTree()
+	{
+		return tree;
+	}
+
 	@SuppressWarnings("unchecked")
 	public IModel<T> getModel()
 	{
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import java.util.Set;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.model.IModel;
+
+import wickettree.util.ParameterState;
+
+/**
+ * A node whose junction component is a bookmarkable link to the current page,
+ * carrying the expansion state with the node toggled in a page parameter.
+ * 
+ * The tree's state has to be a {@link ParameterState}, read from the page
+ * parameters when the page is constructed. If the content components are
+ * stateless too, the tree can be rendered on a stateless page and toggling a
+ * node does not write to the page store.
+ * 
+ * @see AbstractTree#newNodeComponent(String, IModel)
+ * @see ParameterState#toggle(Object, org.apache.wicket.request.mapper.parameter.PageParameters)
+ * 
+ * @author Sven Meier
+ */
+public class StatelessNode<T> extends Node<T>
+{
+
+	private static final long serialVersionUID = 1L;
+
+	public StatelessNode(String id, AbstractTree<T> tree, IModel<T> model)
+	{
+		super(id, tree, model);
+	}
+
+	/**
+	 * Uses a stateless link to the current page.
+	 */
+	@Override
+	protected MarkupContainer createJunctionComponent(String id)
+	{
+		return new Link<Void>(id)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean getStatelessHint()
+			{
+				return true;
+			}
+
+			@Override
+			protected CharSequence getURL()
+			{
+				Page page = getPage();
+
+				return urlFor(page.getClass(), getState().toggle(
+						StatelessNode.this.getModelObject(), page.getPageParameters()));
+			}
+
+			/**
+			 * Never called since the link points to a page.
+			 */
+			@Override
+			public void onClick()
+			{
+			}
+
+			@Override
+			public boolean isEnabled()
+			{
+				return getTree().getProvider().hasChildren(StatelessNode.this.getModelObject());
+			}
+		};
+	}
+
+	/**
+	 * Delegates to the tree.
+	 * 
+	 * @see AbstractTree#newContentComponent(String, IModel)
+	 */
+	@Override
+	protected Component createContent(String id, IModel<T> model)
+	{
+		return getTree().newContentComponent(id, model);
+	}
+
+	private ParameterState<T> getState()
+	{
+		Set<T> state = getTree().getModelObject();
+		if (!(state instanceof ParameterState<?>))
+		{
+			throw new IllegalStateException("state of tree is not a ParameterState");
+		}
+		return (ParameterState<T>)state;
+	}
+}
@@ -15,9 +15,13 @@
  */
 package wickettree;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+
+import org.apache.wicket.Component;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.behavior.AttributeAppender;
 import org.apache.wicket.extensions.markup.html.repeater.data.grid.DataGridView;
@@ -25,10 +29,9 @@ import org.apache.wicket.extensions.markup.html.repeater.data.grid.ICellPopulato
 import org.apache.wicket.extensions.markup.html.repeater.data.table.DataTable;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.IStyledColumn;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.navigation.paging.IPageable;
-import org.apache.wicket.markup.repeater.IItemFactory;
-import org.apache.wicket.markup.repeater.IItemReuseStrategy;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.RepeatingView;
 import org.apache.wicket.model.IModel;
@@ -40,11 +43,20 @@ import wickettree.table.AbstractToolbar;
 import wickettree.table.ITreeColumn;
 import wickettree.table.ITreeDataProvider;
 import wickettree.table.NodeModel;
+import wickettree.table.RowSelection;
 import wickettree.table.TreeDataProvider;
+import wickettree.util.SortableTreeProvider;
 
 /**
  * A tree with tabular markup.
  * 
+ * The number of visible rows is counted in each request and updated by
+ * {@link #updateBranch(Object, AjaxRequestTarget)}. If counts are kept across
+ * requests, call {@link #modelChanged()} when the state or the provider's nodes
+ * are changed directly, so all rows are counted again.
+ * 
+ * @see #setKeepCounts(boolean)
+ * 
  * If you use one of the provided themes, be sure to add a "tree" class
  * attribute to your table markup.
  * 
@@ -55,7 +67,19 @@ public abstract class TableTree<T> extends AbstractTree<T> implements IPageable
 
 	private static final long serialVersionUID = 1L;
 
-	private final DataGridView<T> datagrid;
+	private final Rows datagrid;
+
+	private final ITreeDataProvider<T> dataProvider;
+
+	/**
+	 * The state the rows were counted for.
+	 */
+	private transient Set<T> countedState;
+
+	/**
+	 * The sorts the rows were counted for.
+	 */
+	private List<SortParam> countedSorts;
 
 	private final List<IColumn<T>> columns;
 
@@ -63,6 +87,13 @@ public abstract class TableTree<T> extends AbstractTree<T> implements IPageable
 
 	private final RepeatingView bottomToolbars;
 
+	private RowSelection rowSelection;
+
+	/**
+	 * The count of rows as last rendered.
+	 */
+	private int renderedRows;
+
 	/**
 	 * Constructor
 	 * 
@@ -115,49 +146,11 @@ public abstract class TableTree<T> extends AbstractTree<T> implements IPageable
 		WebMarkupContainer body = newBodyContainer("body");
 		add(body);
 
-		datagrid = new DataGridView<T>("rows", columns, newDataProvider(provider))
-		{
-			private static final long serialVersionUID = 1L;
-
-			@Override
-			protected Item<ICellPopulator<T>> newCellItem(String id, int index,
-					IModel<ICellPopulator<T>> model)
-			{
-				Item<ICellPopulator<T>> item = TableTree.this.newCellItem(id, index, model);
+		dataProvider = newDataProvider(provider);
 
-				final IColumn<?> column = TableTree.this.columns.get(index);
-				if (column instanceof IStyledColumn<?>)
-				{
-					item.add(new AttributeAppender("class", Model
-							.of(((IStyledColumn<?>)column).getCssClass()), " "));
-				}
-
-				return item;
-			}
-
-			@Override
-			protected Item<T> newRowItem(String id, int index, IModel<T> model)
-			{
-				Item<T> item = TableTree.this.newRowItem(id, index, model);
-
-				// @see #updateNode(T, AjaxRequestTarget)
-				item.setOutputMarkupId(true);
-
-				return item;
-			}
-		};
+		datagrid = new Rows("rows", columns, dataProvider);
 		datagrid.setItemsPerPage(itemsPerPage);
-		datagrid.setItemReuseStrategy(new IItemReuseStrategy()
-		{
-			private static final long serialVersionUID = 1L;
-
-			public <S> Iterator<Item<S>> getItems(IItemFactory<S> factory,
-					Iterator<IModel<S>> newModels, Iterator<Item<S>> existingItems)
-			{
-				return TableTree.this.getItemReuseStrategy().getItems(factory, newModels,
-						existingItems);
-			}
-		});
+		datagrid.setItemReuseStrategy(newItemReuseStrategy());
 		body.add(datagrid);
 
 		topToolbars = new ToolbarsContainer("topToolbars");
@@ -241,6 +234,17 @@ public abstract class TableTree<T> extends AbstractTree<T> implements IPageable
 		return datagrid.getCurrentPage();
 	}
 
+	/**
+	 * Get the offset of the first row to render, by default the first row of
+	 * the current page.
+	 * 
+	 * @return offset of first row
+	 */
+	protected int getFirstRowOffset()
+	{
+		return getCurrentPage() * getItemsPerPage();
+	}
+
 	/**
 	 * @return number of items per page
 	 */
@@ -261,6 +265,127 @@ public abstract class TableTree<T> extends AbstractTree<T> implements IPageable
 		datagrid.setItemsPerPage(items);
 	}
 
+	/**
+	 * Set a selection of rows, shifted when rows are inserted or deleted by
+	 * expanding or collapsing a node.
+	 * 
+	 * Note that the selection is cleared when all rows are updated.
+	 * 
+	 * @param rowSelection
+	 *            selection of rows, may be <code>null</code>
+	 * @return this
+	 * @see #updateBranch(Object, AjaxRequestTarget)
+	 */
+	public TableTree<T> setRowSelection(RowSelection rowSelection)
+	{
+		this.rowSelection = rowSelection;
+
+		return this;
+	}
+
+	/**
+	 * Keep the counts of visible rows across requests, saving the counting of
+	 * all rows in each request. Any change of the provider's nodes has to be
+	 * followed by {@link #modelChanged()} or
+	 * {@link #updateBranch(Object, AjaxRequestTarget)} then.
+	 * 
+	 * @param keepCounts
+	 *            <code>true</code> to keep counts, defaults to
+	 *            <code>false</code>
+	 * @return this
+	 * @see TreeDataProvider#setKeepCounts(boolean)
+	 */
+	public TableTree<T> setKeepCounts(boolean keepCounts)
+	{
+		if (dataProvider instanceof TreeDataProvider<?>)
+		{
+			((TreeDataProvider<T>)dataProvider).setKeepCounts(keepCounts);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Get the selection of rows.
+	 * 
+	 * @return selection of rows, may be <code>null</code>
+	 */
+	public RowSelection getRowSelection()
+	{
+		return rowSelection;
+	}
+
+	/**
+	 * Get the row of the given node.
+	 * 
+	 * @param t
+	 *            node
+	 * @return row index or <code>-1</code> if not visible or unknown
+	 */
+	public int getRow(T t)
+	{
+		if (dataProvider instanceof TreeDataProvider<?>)
+		{
+			return ((TreeDataProvider<T>)dataProvider).getRow(t);
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the row of the rendered item containing the given component. In
+	 * contrast to {@link #getRow(Object)} this is the row the component was
+	 * actually rendered in.
+	 * 
+	 * @param component
+	 *            component inside of a row
+	 * @return row index or <code>-1</code> if not inside of a row
+	 */
+	public int getRenderedRow(Component component)
+	{
+		for (Component child = component; child.getParent() != null; child = child
+				.getParent())
+		{
+			if (child.getParent() == datagrid)
+			{
+				return getFirstRowOffset() + ((Item<?>)child).getIndex();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Update all rendered rows in the given range, e.g. after a range of rows
+	 * was selected.
+	 * 
+	 * @param from
+	 *            first row inclusive
+	 * @param to
+	 *            last row exclusive
+	 * @param target
+	 *            target to update rows on, may be <code>null</code>
+	 */
+	public void updateRows(int from, int to, AjaxRequestTarget target)
+	{
+		if (target == null)
+		{
+			return;
+		}
+
+		int offset = getFirstRowOffset();
+
+		Iterator<Item<T>> items = datagrid.getItems();
+		while (items.hasNext())
+		{
+			Item<T> item = items.next();
+
+			int row = offset + item.getIndex();
+			if (row >= from && row < to)
+			{
+				target.add(item);
+			}
+		}
+	}
+
 	/**
 	 * @see DataTable
 	 */
@@ -280,6 +405,64 @@ public abstract class TableTree<T> extends AbstractTree<T> implements IPageable
 		return item;
 	}
 
+	/**
+	 * The view of rows.
+	 */
+	private class Rows extends DataGridView<T>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Rows(String id, List<IColumn<T>> columns, ITreeDataProvider<T> dataProvider)
+		{
+			super(id, columns, dataProvider);
+		}
+
+		@Override
+		public int getFirstItemOffset()
+		{
+			return TableTree.this.getFirstRowOffset();
+		}
+
+		@Override
+		protected Item<ICellPopulator<T>> newCellItem(String id, int index,
+				IModel<ICellPopulator<T>> model)
+		{
+			Item<ICellPopulator<T>> item = TableTree.this.newCellItem(id, index, model);
+
+			final IColumn<?> column = TableTree.this.columns.get(index);
+			if (column instanceof IStyledColumn<?>)
+			{
+				item.add(new AttributeAppender("class", Model
+						.of(((IStyledColumn<?>)column).getCssClass()), " "));
+			}
+
+			return item;
+		}
+
+		@Override
+		protected Item<T> newRowItem(String id, int index, IModel<T> model)
+		{
+			Item<T> item = TableTree.this.newRowItem(id, index, model);
+
+			// @see #updateNode(T, AjaxRequestTarget)
+			item.setOutputMarkupId(true);
+
+			return item;
+		}
+
+		/**
+		 * Add a populated item for a single row.
+		 */
+		Item<T> newRow(IModel<T> model, int index)
+		{
+			Item<T> item = newItem(newChildId(), index, model);
+			add(item);
+			populateItem(item);
+
+			return item;
+		}
+	}
+
 	/**
 	 * @see DataTable
 	 */
@@ -293,6 +476,364 @@ public abstract class TableTree<T> extends AbstractTree<T> implements IPageable
 		}
 	}
 
+	/**
+	 * Overriden to count the rows again if the state was replaced or the
+	 * provider's sort changed, since the rows are reordered.
+	 * 
+	 * @see TreeDataProvider#update(Object)
+	 * @see SortableTreeProvider#getSorts()
+	 */
+	@Override
+	protected void onConfigure()
+	{
+		super.onConfigure();
+
+		Set<T> state = getModelObject();
+		List<SortParam> sorts = getSorts();
+		if ((countedState != null && state != countedState) ||
+			(countedSorts != null && !sorts.equals(countedSorts)))
+		{
+			recount(null);
+		}
+		countedState = state;
+		countedSorts = sorts;
+	}
+
+	/**
+	 * Overriden to remember the count of rendered rows.
+	 */
+	@Override
+	protected void onBeforeRender()
+	{
+		renderedRows = dataProvider.size();
+
+		super.onBeforeRender();
+	}
+
+	private List<SortParam> getSorts()
+	{
+		if (getProvider() instanceof SortableTreeProvider<?>)
+		{
+			return new ArrayList<SortParam>(((SortableTreeProvider<?>)getProvider()).getSorts());
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Overriden to count the rows again, since the state was changed directly.
+	 * 
+	 * @see TreeDataProvider#update(Object)
+	 */
+	@Override
+	protected void onModelChanged()
+	{
+		super.onModelChanged();
+
+		recount(null);
+	}
+
+	/**
+	 * Overriden to update the count of rows of the affected branch, regardless
+	 * of the given target. If the count of pages does not change, only the rows
+	 * of the branch on the current page are updated on the given target, plus
+	 * any rows shifted onto or off the current page.
+	 * 
+	 * Note that other following rows are not updated, thus any alternation of
+	 * rows is not adjusted, e.g. by
+	 * {@link org.apache.wicket.markup.repeater.OddEvenItem}.
+	 * 
+	 * @see TreeDataProvider#update(Object)
+	 * @see #setRowSelection(RowSelection)
+	 * @see AbstractToolbar#onRowsUpdated(AjaxRequestTarget)
+	 */
+	@Override
+	public void updateBranch(T t, AjaxRequestTarget target)
+	{
+		stateChanging();
+
+		// counts might not be kept from the last render
+		int before = renderedRows;
+		recount(t);
+		renderedRows = dataProvider.size();
+
+		if (rowSelection != null && t != null)
+		{
+			int delta = renderedRows - before;
+
+			// rows of the branch follow the node's row
+			int row = getRow(t);
+			if (row != -1)
+			{
+				rowSelection.delete(row + 1, -delta);
+				rowSelection.insert(row + 1, delta);
+			}
+		}
+
+		if (target != null && t != null && updateBranchRows(t, before, target))
+		{
+			return;
+		}
+
+		super.updateBranch(t, target);
+	}
+
+	private void recount(T t)
+	{
+		if (t == null && rowSelection != null)
+		{
+			rowSelection.clear();
+		}
+
+		if (dataProvider instanceof TreeDataProvider<?>)
+		{
+			((TreeDataProvider<T>)dataProvider).update(t);
+		}
+	}
+
+	/**
+	 * Replace the rendered rows of the given node's descendants on the current
+	 * page.
+	 * 
+	 * @param before
+	 *            count of rows before the update
+	 * @return <code>false</code> if not possible since the count of pages
+	 *         changed or the node's row is not rendered
+	 */
+	private boolean updateBranchRows(T t, int before, AjaxRequestTarget target)
+	{
+		int count = dataProvider.size();
+		int perPage = getItemsPerPage();
+
+		if (pages(before, perPage) != pages(count, perPage))
+		{
+			return false;
+		}
+
+		List<Item<T>> items = getRenderedItems();
+
+		int row = items.indexOf(findComponent(Item.class, t));
+		if (row == -1)
+		{
+			return false;
+		}
+		Item<T> item = items.get(row);
+		int depth = ((NodeModel<T>)item.getModel()).getDepth();
+
+		// remove rows of previous descendants
+		while (row + 1 < items.size() &&
+			((NodeModel<T>)items.get(row + 1).getModel()).getDepth() > depth)
+		{
+			removeRow(items, row + 1, target);
+		}
+
+		int offset = getFirstRowOffset();
+
+		// insert rows of current descendants as far as they fit on the page
+		if (getState(t) == State.EXPANDED)
+		{
+			boolean descendant = true;
+			for (NodeModel<T> nodeModel : rows(offset + row + 1, perPage - (row + 1)))
+			{
+				descendant = descendant && nodeModel.getDepth() > depth;
+				if (descendant)
+				{
+					row++;
+					insertRow(items, row, nodeModel, target);
+				}
+				else
+				{
+					nodeModel.detach();
+				}
+			}
+		}
+
+		// remove following rows shifted off the page
+		while (items.size() > perPage)
+		{
+			removeRow(items, items.size() - 1, target);
+		}
+
+		// append following rows shifted onto the page
+		for (NodeModel<T> nodeModel : rows(offset + items.size(), perPage - items.size()))
+		{
+			insertRow(items, items.size(), nodeModel, target);
+		}
+
+		reindex(items);
+
+		target.add(item);
+
+		if (count != before)
+		{
+			rowsUpdated(target);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Move the rendered rows to the current offset, keeping all rows which are
+	 * still in range. Removed rows and added rows are updated on the given
+	 * target only.
+	 * 
+	 * @param before
+	 *            offset of the rendered rows
+	 * @param target
+	 *            target to update rows on
+	 * @return <code>false</code> if not possible since no rendered row is kept
+	 * @see #getFirstRowOffset()
+	 */
+	boolean updateRowsOffset(int before, AjaxRequestTarget target)
+	{
+		int offset = getFirstRowOffset();
+		int perPage = getItemsPerPage();
+
+		List<Item<T>> items = getRenderedItems();
+
+		int shift = offset - before;
+		if (Math.abs(shift) >= items.size())
+		{
+			return false;
+		}
+
+		if (shift > 0)
+		{
+			// remove leading rows
+			for (int i = 0; i < shift; i++)
+			{
+				removeRow(items, 0, target);
+			}
+		}
+		else if (shift < 0)
+		{
+			// remove trailing rows and prepend rows
+			while (items.size() > perPage + shift)
+			{
+				removeRow(items, items.size() - 1, target);
+			}
+
+			int index = 0;
+			for (NodeModel<T> nodeModel : rows(offset, -shift))
+			{
+				insertRow(items, index++, nodeModel, target);
+			}
+		}
+
+		// append rows up to the end of the page
+		for (NodeModel<T> nodeModel : rows(offset + items.size(), perPage - items.size()))
+		{
+			insertRow(items, items.size(), nodeModel, target);
+		}
+
+		reindex(items);
+
+		rowsUpdated(target);
+
+		return true;
+	}
+
+	/**
+	 * Get the rendered row items, sorted by their index.
+	 */
+	private List<Item<T>> getRenderedItems()
+	{
+		List<Item<T>> items = new ArrayList<Item<T>>();
+		Iterator<Item<T>> iterator = datagrid.getItems();
+		while (iterator.hasNext())
+		{
+			items.add(iterator.next());
+		}
+		Collections.sort(items, Item.IndexComparator.getInstance());
+
+		return items;
+	}
+
+	private void reindex(List<Item<T>> items)
+	{
+		for (int index = 0; index < items.size(); index++)
+		{
+			items.get(index).setIndex(index);
+		}
+	}
+
+	/**
+	 * Notify all toolbars of updated rows.
+	 * 
+	 * @see AbstractToolbar#onRowsUpdated(AjaxRequestTarget)
+	 */
+	private void rowsUpdated(final AjaxRequestTarget target)
+	{
+		visitChildren(AbstractToolbar.class, new IVisitor<AbstractToolbar, Void>()
+		{
+			public void component(AbstractToolbar toolbar, IVisit<Void> visit)
+			{
+				toolbar.onRowsUpdated(target);
+
+				visit.dontGoDeeper();
+			}
+		});
+	}
+
+	private static int pages(int count, int perPage)
+	{
+		return count / perPage + (count % perPage == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Get models of at most the given count of rows starting at the given row.
+	 * Each model is created while iterating, since it depends on the
+	 * iteration state of the data provider.
+	 */
+	private List<NodeModel<T>> rows(int first, int max)
+	{
+		int count = Math.min(dataProvider.size() - first, max);
+
+		List<NodeModel<T>> rows = new ArrayList<NodeModel<T>>();
+		if (count > 0)
+		{
+			Iterator<? extends T> iterator = dataProvider.iterator(first, count);
+			while (rows.size() < count && iterator.hasNext())
+			{
+				rows.add(dataProvider.model(iterator.next()));
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Remove the rendered row at the given index.
+	 */
+	private void removeRow(List<Item<T>> items, int index, AjaxRequestTarget target)
+	{
+		Item<T> row = items.remove(index);
+
+		target.prependJavaScript("var row = Wicket.$('" + row.getMarkupId() +
+			"'); if (row) { row.parentNode.removeChild(row); }");
+
+		datagrid.remove(row);
+		unindex(row);
+	}
+
+	/**
+	 * Insert a rendered row at the given index, following the row before or
+	 * preceding the first row.
+	 */
+	private void insertRow(List<Item<T>> items, int index, NodeModel<T> nodeModel,
+			AjaxRequestTarget target)
+	{
+		Item<T> anchor = items.get(index == 0 ? 0 : index - 1);
+
+		Item<T> row = datagrid.newRow(nodeModel, index);
+		index(row);
+		items.add(index, row);
+
+		target.prependJavaScript("var anchor = Wicket.$('" + anchor.getMarkupId() +
+			"'), row = document.createElement('tr'); row.id = '" + row.getMarkupId() +
+			"'; anchor.parentNode.insertBefore(row, " +
+			(index == 0 ? "anchor" : "anchor.nextSibling") + ");");
+		target.add(row);
+	}
+
 	/**
 	 * Overriden to update the complete row item of the node.
 	 * 
@@ -303,22 +844,27 @@ public abstract class TableTree<T> extends AbstractTree<T> implements IPageable
 	{
 		if (target != null)
 		{
-			final IModel<T> model = getProvider().model(t);
-			visitChildren(Item.class, new IVisitor<Item<T>, Void>()
+			Component item = findComponent(Item.class, t);
+			if (item != null)
 			{
-				public void component(Item<T> item, IVisit<Void> visit)
-				{
-					NodeModel<T> nodeModel = (NodeModel<T>)item.getModel();
-
-					if (model.equals(nodeModel.getWrappedModel()))
-					{
-						target.add(item);
-						visit.stop();
-					}
-					visit.dontGoDeeper();
-				}
-			});
-			model.detach();
+				target.add(item);
+			}
+		}
+	}
+
+	/**
+	 * Overriden to unwrap the model of row items.
+	 * 
+	 * @see NodeModel#getWrappedModel()
+	 */
+	@Override
+	protected IModel<?> getNodeModel(Component component)
+	{
+		IModel<?> model = super.getNodeModel(component);
+		if (model instanceof NodeModel<?>)
+		{
+			model = ((NodeModel<?>)model).getWrappedModel();
 		}
+		return model;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.IModel;
+
+import wickettree.table.SpacerToolbar;
+import wickettree.table.TreeDataProvider;
+
+/**
+ * A tree with tabular markup, rendering only a window of rows around the
+ * current scroll position. Further rows are fetched via Ajax as the user
+ * scrolls, the height of all other rows is taken up by spacers.
+ * 
+ * The table has to be placed into an element with fixed height and overflow,
+ * e.g. <code>&lt;div style="height: 400px; overflow-y: auto;"&gt;</code>, and
+ * all rows have to be of the same height.
+ * 
+ * When scrolling, only the rows moved into or out of the window are updated
+ * together with the spacers, unless the window jumps to rows not rendered yet.
+ * 
+ * @see TreeDataProvider#iterator(int, int)
+ * 
+ * @author Sven Meier
+ */
+public abstract class VirtualTableTree<T> extends TableTree<T>
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private final int rowHeight;
+
+	private int firstRow;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param id
+	 *            component id
+	 * @param columns
+	 *            list of column definitions
+	 * @param provider
+	 *            provider of the tree
+	 * @param rows
+	 *            number of rows to render, should be at least twice the
+	 *            number of visible rows
+	 * @param rowHeight
+	 *            height of each row in pixels
+	 */
+	public VirtualTableTree(String id, List<IColumn<T>> columns, ITreeProvider<T> provider,
+			int rows, int rowHeight)
+	{
+		this(id, columns, provider, rows, rowHeight, null);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param id
+	 *            component id
+	 * @param columns
+	 *            list of column definitions
+	 * @param provider
+	 *            provider of the tree
+	 * @param rows
+	 *            number of rows to render, should be at least twice the
+	 *            number of visible rows
+	 * @param rowHeight
+	 *            height of each row in pixels
+	 * @param state
+	 *            state of nodes
+	 */
+	public VirtualTableTree(String id, List<IColumn<T>> columns, ITreeProvider<T> provider,
+			int rows, int rowHeight, IModel<Set<T>> state)
+	{
+		super(id, columns, provider, rows, state);
+
+		this.rowHeight = rowHeight;
+
+		setOutputMarkupId(true);
+
+		add(new ScrollBehavior());
+	}
+
+	/**
+	 * Add spacers after all other toolbars were added in constructors.
+	 */
+	@Override
+	protected void onInitialize()
+	{
+		super.onInitialize();
+
+		addTopToolbar(new SpacerToolbar(this, new AbstractReadOnlyModel<Integer>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Integer getObject()
+			{
+				return getFirstRowOffset() * rowHeight;
+			}
+		}));
+		addBottomToolbar(new SpacerToolbar(this, new AbstractReadOnlyModel<Integer>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Integer getObject()
+			{
+				return Math.max(0, getRowCount() - getFirstRowOffset() - getItemsPerPage()) *
+					rowHeight;
+			}
+		}));
+	}
+
+	/**
+	 * Overriden to start at the current scroll position.
+	 */
+	@Override
+	protected int getFirstRowOffset()
+	{
+		return Math.max(0, Math.min(firstRow, getRowCount() - getItemsPerPage()));
+	}
+
+	/**
+	 * Scroll to the given row.
+	 * 
+	 * @param row
+	 *            row to scroll to
+	 */
+	public void setFirstRow(int row)
+	{
+		this.firstRow = row;
+	}
+
+	public int getRowHeight()
+	{
+		return rowHeight;
+	}
+
+	/**
+	 * Overriden to update the window of rows known to the client.
+	 */
+	@Override
+	public void updateBranch(T t, AjaxRequestTarget target)
+	{
+		super.updateBranch(t, target);
+
+		if (target != null)
+		{
+			target.appendJavaScript(getRowsScript());
+		}
+	}
+
+	/**
+	 * Script to tell the client the window of rendered rows.
+	 */
+	private String getRowsScript()
+	{
+		int first = getFirstRowOffset();
+		int count = getRowCount();
+		int last = Math.min(first + getItemsPerPage(), count);
+
+		return "Wicket.$('" + getMarkupId() + "').wicketRows = { first: " + first +
+			", last: " + last + ", count: " + count + " };";
+	}
+
+	/**
+	 * Behavior fetching the rows at the scroll position of the parental
+	 * element.
+	 */
+	private class ScrollBehavior extends AbstractDefaultAjaxBehavior
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void renderHead(Component component, IHeaderResponse response)
+		{
+			super.renderHead(component, response);
+
+			String id = getMarkupId();
+
+			response.renderCSS("#" + id + " tbody tr { height: " + rowHeight + "px; }", id +
+				"-rows");
+
+			StringBuilder script = new StringBuilder();
+			script.append("(function() {");
+			script.append(getRowsScript());
+			script.append("var viewport = Wicket.$('" + id + "').parentNode, timeout;");
+			script.append("viewport.onscroll = function() {");
+			script.append("clearTimeout(timeout);");
+			script.append("timeout = setTimeout(function() {");
+			script.append("var rows = Wicket.$('" + id + "').wicketRows;");
+			script.append("var top = Math.floor(viewport.scrollTop / " + rowHeight + ");");
+			script.append("var bottom = Math.min(rows.count" +
+				", Math.ceil((viewport.scrollTop + viewport.clientHeight) / " + rowHeight +
+				"));");
+			script.append("if (top < rows.first || bottom > rows.last) {");
+			script.append("var first = Math.max(0, top - Math.floor((" + getItemsPerPage() +
+				" - (bottom - top)) / 2));");
+			script.append(generateCallbackScript("wicketAjaxGet('" + getCallbackUrl() +
+				"&first=' + first"));
+			script.append("}");
+			script.append("}, 100);");
+			script.append("};");
+			script.append("})();");
+
+			response.renderOnDomReadyJavaScript(script.toString());
+		}
+
+		/**
+		 * Updates the rows which were scrolled into or out of the window only.
+		 */
+		@Override
+		protected void respond(AjaxRequestTarget target)
+		{
+			int before = getFirstRowOffset();
+
+			setFirstRow(getRequest().getRequestParameters()
+					.getParameterValue("first")
+					.toInt(0));
+
+			if (updateRowsOffset(before, target))
+			{
+				target.appendJavaScript(getRowsScript());
+			}
+			else
+			{
+				target.add(VirtualTableTree.this);
+			}
+		}
+	}
+}
@@ -19,8 +19,6 @@ import java.util.Iterator;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.html.panel.Panel;
-import org.apache.wicket.markup.repeater.IItemFactory;
-import org.apache.wicket.markup.repeater.IItemReuseStrategy;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.RefreshingView;
 import org.apache.wicket.model.IModel;
@@ -33,7 +31,7 @@ import wickettree.AbstractTree.State;
  * A subtree handles all children of a single node (or the root nodes if a
  * <code>null</code> node was given to the constructor).
  * 
- * @see ITreeProvider#getChildren(Object)
+ * @see NestedTree#getChildren(Object)
  * @see ITreeProvider#getRoots()
  * 
  * @author Sven Meier
@@ -92,16 +90,7 @@ public class Subtree<T> extends Panel
 				item.add(tree.newSubtree("subtree", model));
 			}
 		};
-		branches.setItemReuseStrategy(new IItemReuseStrategy()
-		{
-			private static final long serialVersionUID = 1L;
-
-			public <S> Iterator<Item<S>> getItems(IItemFactory<S> factory,
-					Iterator<IModel<S>> newModels, Iterator<Item<S>> existingItems)
-			{
-				return tree.getItemReuseStrategy().getItems(factory, newModels, existingItems);
-			}
-		});
+		branches.setItemReuseStrategy(tree.newItemReuseStrategy());
 		add(branches);
 	}
 
@@ -139,15 +128,7 @@ public class Subtree<T> extends Panel
 
 		public ModelIterator()
 		{
-			T t = getModel().getObject();
-			if (t == null)
-			{
-				children = tree.getProvider().getRoots();
-			}
-			else
-			{
-				children = tree.getProvider().getChildren(t);
-			}
+			children = tree.getChildren(getModel().getObject());
 		}
 
 		public void remove()
@@ -16,6 +16,7 @@
  */
 package wickettree.table;
 
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.DataTable;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.IModel;
@@ -51,4 +52,17 @@ public abstract class AbstractToolbar extends Panel
 	{
 		return tree;
 	}
+
+	/**
+	 * Notification that rows were inserted or removed on an AJAX request
+	 * without rendering the whole tree. Override to update components
+	 * depending on the count of rows.
+	 * 
+	 * @param target
+	 *            target to update components on
+	 * @see TableTree#updateBranch(Object, AjaxRequestTarget)
+	 */
+	public void onRowsUpdated(AjaxRequestTarget target)
+	{
+	}
 }
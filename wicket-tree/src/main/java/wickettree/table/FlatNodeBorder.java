@@ -0,0 +1,114 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.table;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.ComponentTag;
+
+/**
+ * A border for a node component which indents the component according to its
+ * depth, without rendering any additional markup.
+ * 
+ * Contrary to {@link NodeBorder} the size of the markup does not grow with the
+ * depth of the node. Indentation and lines of branches are left to the theme:
+ * The component gets a "tree-depth-<i>n</i>" class and the depth of its
+ * parent in the CSS variable "--tree-depth". If any parental branch has a
+ * line, a "tree-lines" class is added and the CSS variable "--tree-lines"
+ * holds one background layer per line, each referring to the variables
+ * "--tree-line" and "--tree-indent" of the theme.
+ * 
+ * @see NodeModel
+ * @see TreeColumn#newNodeBorder(NodeModel)
+ * @author Sven Meier
+ */
+public class FlatNodeBorder extends Behavior
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private NodeModel<?> nodeModel;
+
+	/**
+	 * @param nodeModel
+	 *            model of node
+	 */
+	public FlatNodeBorder(NodeModel<?> nodeModel)
+	{
+		this.nodeModel = nodeModel;
+	}
+
+	@Override
+	public void onComponentTag(Component component, ComponentTag tag)
+	{
+		int depth = nodeModel.getDepth();
+
+		StringBuilder classes = new StringBuilder("tree-node tree-flat tree-depth-").append(depth);
+		if (nodeModel.getBranch(depth - 1))
+		{
+			classes.append(" tree-branch-mid");
+		}
+		else
+		{
+			classes.append(" tree-branch-last");
+		}
+
+		StringBuilder style = new StringBuilder("--tree-depth: ").append(depth - 1).append(";");
+
+		String lines = lines(depth);
+		if (lines != null)
+		{
+			classes.append(" tree-lines");
+			style.append(" --tree-lines: ").append(lines).append(";");
+		}
+
+		tag.append("class", classes, " ");
+		tag.append("style", style, " ");
+		tag.put("data-depth", depth);
+	}
+
+	/**
+	 * Background layers for all branches with a line, including the branch of
+	 * the node itself, since the layers replace the background of the theme.
+	 * 
+	 * @return layers or <code>null</code> if no parental branch has a line
+	 */
+	private String lines(int depth)
+	{
+		boolean parental = false;
+		StringBuilder layers = new StringBuilder();
+		for (int i = 0; i < depth; i++)
+		{
+			if (nodeModel.getBranch(i))
+			{
+				if (layers.length() > 0)
+				{
+					layers.append(", ");
+				}
+				layers.append("var(--tree-line) calc(var(--tree-indent) * ").append(i).append(") 0px");
+
+				parental |= (i < depth - 1);
+			}
+		}
+
+		if (!parental)
+		{
+			// no parental lines, leave the branch to the theme
+			return null;
+		}
+		return layers.toString();
+	}
+}
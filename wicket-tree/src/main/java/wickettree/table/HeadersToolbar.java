@@ -17,19 +17,30 @@
 package wickettree.table;
 
 import org.apache.wicket.behavior.AttributeAppender;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.ISortState;
 import org.apache.wicket.extensions.markup.html.repeater.data.sort.ISortStateLocator;
 import org.apache.wicket.extensions.markup.html.repeater.data.sort.OrderByBorder;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.IStyledColumn;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.Model;
 
 import wickettree.TableTree;
+import wickettree.util.CompoundSortState;
 
 /**
  * Copy of
  * {@link org.apache.wicket.extensions.markup.html.repeater.data.table.HeadersToolbar}
+ * 
+ * With a {@link CompoundSortState} each click on a header makes its property the
+ * primary sort key, keeping the previous properties as secondary keys. Headers
+ * of sorted properties are marked with their rank, i.e. the CSS class
+ * <code>sortRank1</code> for the primary key, <code>sortRank2</code> for the
+ * secondary key and so on.
+ * 
+ * @see CompoundSortState#getRank(String)
  */
 public class HeadersToolbar extends AbstractToolbar
 {
@@ -68,6 +79,8 @@ public class HeadersToolbar extends AbstractToolbar
 			if (column.isSortable())
 			{
 				header = newSortableHeader("header", column.getSortProperty(), stateLocator);
+				header.add(new AttributeAppender("class", new RankModel(column.getSortProperty(),
+						stateLocator), " "));
 			}
 			else
 			{
@@ -113,4 +126,40 @@ public class HeadersToolbar extends AbstractToolbar
 			}
 		};
 	}
+
+	/**
+	 * The CSS class of the rank of a property in a {@link CompoundSortState}.
+	 */
+	private static class RankModel extends AbstractReadOnlyModel<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String property;
+
+		private final ISortStateLocator locator;
+
+		public RankModel(String property, ISortStateLocator locator)
+		{
+			this.property = property;
+			this.locator = locator;
+		}
+
+		@Override
+		public String getObject()
+		{
+			if (locator != null)
+			{
+				ISortState state = locator.getSortState();
+				if (state instanceof CompoundSortState)
+				{
+					int rank = ((CompoundSortState)state).getRank(property);
+					if (rank != -1)
+					{
+						return "sortRank" + (rank + 1);
+					}
+				}
+			}
+			return null;
+		}
+	}
 }
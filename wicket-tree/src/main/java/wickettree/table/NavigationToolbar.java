@@ -17,6 +17,7 @@
 package wickettree.table;
 
 import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.markup.html.WebComponent;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.navigation.paging.PagingNavigator;
@@ -34,12 +35,15 @@ public class NavigationToolbar extends AbstractToolbar
 
 	private final TableTree<?> table;
 
+	private final WebMarkupContainer span;
+
 	public NavigationToolbar(final TableTree<?> table)
 	{
 		super(table);
 		this.table = table;
 
-		WebMarkupContainer span = new WebMarkupContainer("span");
+		span = new WebMarkupContainer("span");
+		span.setOutputMarkupId(true);
 		add(span);
 		span.add(new AttributeModifier("colspan", new Model<String>(String.valueOf(table
 				.getColumns().size()))));
@@ -58,6 +62,18 @@ public class NavigationToolbar extends AbstractToolbar
 		return new NavigatorLabel(navigatorId, table);
 	}
 
+	/**
+	 * Overriden to update the navigation, since the count of rows changed.
+	 */
+	@Override
+	public void onRowsUpdated(AjaxRequestTarget target)
+	{
+		if (isVisibleInHierarchy())
+		{
+			target.add(span);
+		}
+	}
+
 	@Override
 	public boolean isVisible()
 	{
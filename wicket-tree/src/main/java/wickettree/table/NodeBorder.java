@@ -35,11 +35,20 @@ public class NodeBorder extends Behavior
 
 	private static final long serialVersionUID = 1L;
 
-	private boolean[] branches;
+	private NodeModel<?> nodeModel;
 
+	/**
+	 * @deprecated use {@link #NodeBorder(NodeModel)} instead
+	 */
+	@Deprecated
 	public NodeBorder(boolean[] branches)
 	{
-		this.branches = branches;
+		this(new NodeModel<Object>(null, branches));
+	}
+
+	public NodeBorder(NodeModel<?> nodeModel)
+	{
+		this.nodeModel = nodeModel;
 	}
 
 	@Override
@@ -47,14 +56,15 @@ public class NodeBorder extends Behavior
 	{
 		Response response = component.getResponse();
 
-		for (int i = 0; i < branches.length; i++)
+		int depth = nodeModel.getDepth();
+		for (int i = 0; i < depth; i++)
 		{
 			if (i > 0)
 			{
 				response.write("<div class=\"tree-subtree\">");
 			}
 
-			if (branches[i])
+			if (nodeModel.getBranch(i))
 			{
 				response.write("<div class=\"tree-branch tree-branch-mid\">");
 			}
@@ -68,7 +78,7 @@ public class NodeBorder extends Behavior
 	@Override
 	public void onComponentTag(Component component, ComponentTag tag)
 	{
-		tag.put("class", "tree-node");
+		tag.append("class", "tree-node", " ");
 	}
 
 	@Override
@@ -76,7 +86,8 @@ public class NodeBorder extends Behavior
 	{
 		Response response = component.getResponse();
 
-		for (int i = 0; i < branches.length; i++)
+		int depth = nodeModel.getDepth();
+		for (int i = 0; i < depth; i++)
 		{
 			response.write("</div>");
 		}
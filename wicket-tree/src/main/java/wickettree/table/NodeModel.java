@@ -15,17 +15,25 @@
  */
 package wickettree.table;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 
 import org.apache.wicket.model.IModel;
 
 import wickettree.ITreeProvider;
+import wickettree.util.Varints;
 
 /**
  * A model wrapping the actual node model, carrying additional information about
  * the parental branches.
  * 
- * @see #getBranches()
+ * Branches are encoded in a bitmask, with an overflow for deep trees only.
+ * Serialized branches are packed into one byte per eight levels, following the
+ * depth.
+ * 
+ * @see #getBranch(int)
  * @see ITreeProvider#model(Object)
  * 
  * @author Sven Meier
@@ -37,12 +45,75 @@ public class NodeModel<T> implements IModel<T>
 
 	private IModel<T> model;
 
-	private boolean[] branches;
+	private transient int depth;
+
+	/**
+	 * Bits of the first 64 branches.
+	 */
+	private transient long branches;
+
+	/**
+	 * Bits of any further branches, <code>null</code> if none is set. Might be
+	 * shared with other node models, thus never modified.
+	 */
+	private transient long[] overflow;
 
 	public NodeModel(IModel<T> model, boolean[] branches)
 	{
 		this.model = model;
-		this.branches = branches;
+		this.depth = branches.length;
+
+		for (int i = 0; i < branches.length; i++)
+		{
+			if (branches[i])
+			{
+				set(i);
+			}
+		}
+	}
+
+	/**
+	 * Create a model for a child of the given parent, sharing its branches.
+	 * 
+	 * @param model
+	 *            model to wrap
+	 * @param parent
+	 *            model of parent
+	 * @param branch
+	 *            is the new branch followed by further siblings
+	 */
+	NodeModel(IModel<T> model, NodeModel<?> parent, boolean branch)
+	{
+		this.model = model;
+		this.depth = parent.depth + 1;
+		this.branches = parent.branches;
+		this.overflow = parent.overflow;
+
+		if (branch)
+		{
+			set(depth - 1);
+		}
+	}
+
+	private void set(int index)
+	{
+		if (index < 64)
+		{
+			branches |= 1l << index;
+		}
+		else
+		{
+			int o = (index - 64) >>> 6;
+
+			long[] copy = new long[o + 1];
+			if (overflow != null)
+			{
+				System.arraycopy(overflow, 0, copy, 0, Math.min(overflow.length, copy.length));
+			}
+			copy[o] |= 1l << (index & 63);
+
+			overflow = copy;
+		}
 	}
 
 	public IModel<T> getWrappedModel()
@@ -67,14 +138,89 @@ public class NodeModel<T> implements IModel<T>
 
 	public int getDepth()
 	{
-		return branches.length;
+		return depth;
 	}
 
+	/**
+	 * Is the branch at the given index followed by further siblings.
+	 * 
+	 * @param index
+	 *            index of branch, <code>0</code> for roots
+	 * @return <code>true</code> if followed by siblings
+	 */
+	public boolean getBranch(int index)
+	{
+		if (index < 0 || index >= depth)
+		{
+			throw new IndexOutOfBoundsException("index " + index);
+		}
+
+		if (index < 64)
+		{
+			return (branches & (1l << index)) != 0;
+		}
+		else
+		{
+			int o = (index - 64) >>> 6;
+
+			return overflow != null && o < overflow.length &&
+				(overflow[o] & (1l << (index & 63))) != 0;
+		}
+	}
+
+	/**
+	 * Get all branches - prefer {@link #getBranch(int)} since each call
+	 * creates a new array.
+	 * 
+	 * @return branches
+	 */
 	public boolean[] getBranches()
 	{
+		boolean[] branches = new boolean[depth];
+		for (int i = 0; i < depth; i++)
+		{
+			branches[i] = getBranch(i);
+		}
 		return branches;
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+
+		Varints.writeLong(out, depth);
+		for (int i = 0; i < depth; i += 8)
+		{
+			int bits = 0;
+			for (int b = 0; b < 8 && i + b < depth; b++)
+			{
+				if (getBranch(i + b))
+				{
+					bits |= 1 << b;
+				}
+			}
+			out.writeByte(bits);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		depth = (int)Varints.readLong(in);
+		for (int i = 0; i < depth; i += 8)
+		{
+			int bits = in.readUnsignedByte();
+			for (int b = 0; b < 8; b++)
+			{
+				if ((bits & (1 << b)) != 0)
+				{
+					set(i + b);
+				}
+			}
+		}
+	}
+
 	@Override
 	public int hashCode()
 	{
@@ -88,9 +234,10 @@ public class NodeModel<T> implements IModel<T>
 		{
 			NodeModel<?> nodeModel = (NodeModel<?>)obj;
 
-			return Arrays.equals(this.branches, nodeModel.branches)
+			return this.depth == nodeModel.depth && this.branches == nodeModel.branches
+					&& Arrays.equals(this.overflow, nodeModel.overflow)
 					&& this.model.equals((nodeModel).model);
 		}
 		return false;
 	}
-}
\ No newline at end of file
+}
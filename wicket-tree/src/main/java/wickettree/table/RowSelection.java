@@ -0,0 +1,304 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.table;
+
+import org.apache.wicket.IClusterable;
+
+import wickettree.TableTree;
+
+/**
+ * A selection of rows, kept as a list of intervals of row indices instead of
+ * single nodes, so a range of rows is selected at once.
+ * 
+ * Since row indices change when nodes are expanded or collapsed, a
+ * {@link TableTree} shifts its selection accordingly.
+ * 
+ * @see TableTree#setRowSelection(RowSelection)
+ * 
+ * @author Sven Meier
+ */
+public class RowSelection implements IClusterable
+{
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Sorted bounds of selected intervals, each interval starting inclusive at
+	 * an even index and ending exclusive at the following odd index.
+	 */
+	private int[] bounds = new int[8];
+
+	private int size;
+
+	/**
+	 * Row of the last single selection.
+	 */
+	private int anchor = -1;
+
+	/**
+	 * Is the given row selected.
+	 * 
+	 * @param row
+	 *            row index
+	 * @return <code>true</code> if selected
+	 */
+	public boolean isSelected(int row)
+	{
+		return (countUpTo(row) & 1) == 1;
+	}
+
+	/**
+	 * Get the count of selected rows.
+	 * 
+	 * @return count of rows
+	 */
+	public int getCount()
+	{
+		int count = 0;
+		for (int i = 0; i < size; i += 2)
+		{
+			count += bounds[i + 1] - bounds[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Get the count of selected intervals.
+	 * 
+	 * @return count of intervals
+	 */
+	public int getIntervalCount()
+	{
+		return size / 2;
+	}
+
+	/**
+	 * Toggle the selection of a single row, which becomes the anchor for a
+	 * following range selection.
+	 * 
+	 * @param row
+	 *            row index
+	 * @see #selectRange(int)
+	 */
+	public void toggle(int row)
+	{
+		set(row, row + 1, !isSelected(row));
+
+		anchor = row;
+	}
+
+	/**
+	 * Select all rows between the anchor and the given row.
+	 * 
+	 * @param row
+	 *            row index
+	 * @return index of the first selected row
+	 * @see #toggle(int)
+	 */
+	public int selectRange(int row)
+	{
+		if (anchor == -1)
+		{
+			toggle(row);
+
+			return row;
+		}
+
+		int from = Math.min(anchor, row);
+		set(from, Math.max(anchor, row) + 1, true);
+		return from;
+	}
+
+	/**
+	 * Get the anchor for range selections.
+	 * 
+	 * @return row index or <code>-1</code>
+	 */
+	public int getAnchor()
+	{
+		return anchor;
+	}
+
+	/**
+	 * Select or deselect the given rows.
+	 * 
+	 * @param from
+	 *            first row inclusive
+	 * @param to
+	 *            last row exclusive
+	 * @param selected
+	 *            select or deselect
+	 */
+	public void set(int from, int to, boolean selected)
+	{
+		if (from >= to)
+		{
+			return;
+		}
+
+		int first = countBefore(from);
+		int last = countUpTo(to);
+
+		int[] insert = new int[2];
+		int inserts = 0;
+		if (((first & 1) == 0) == selected)
+		{
+			insert[inserts++] = from;
+		}
+		if (((last & 1) == 0) == selected)
+		{
+			insert[inserts++] = to;
+		}
+
+		replace(first, last, insert, inserts);
+	}
+
+	/**
+	 * Deselect all rows.
+	 */
+	public void clear()
+	{
+		size = 0;
+		anchor = -1;
+	}
+
+	/**
+	 * Rows were inserted, shift following selected rows.
+	 * 
+	 * @param row
+	 *            index of first inserted row
+	 * @param count
+	 *            count of inserted rows
+	 */
+	public void insert(int row, int count)
+	{
+		if (count <= 0)
+		{
+			return;
+		}
+
+		int first = countBefore(row);
+		if ((first & 1) == 1 && bounds[first] == row)
+		{
+			// interval ends before inserted rows
+			first++;
+		}
+		for (int i = first; i < size; i++)
+		{
+			bounds[i] += count;
+		}
+
+		if ((first & 1) == 1)
+		{
+			// inserted rows are not selected
+			replace(first, first, new int[] { row, row + count }, 2);
+		}
+
+		if (anchor >= row)
+		{
+			anchor += count;
+		}
+	}
+
+	/**
+	 * Rows were deleted, shift following selected rows.
+	 * 
+	 * @param row
+	 *            index of first deleted row
+	 * @param count
+	 *            count of deleted rows
+	 */
+	public void delete(int row, int count)
+	{
+		if (count <= 0)
+		{
+			return;
+		}
+
+		set(row, row + count, false);
+
+		int first = countUpTo(row);
+		for (int i = first; i < size; i++)
+		{
+			bounds[i] -= count;
+		}
+
+		if (first > 0 && first < size && bounds[first - 1] == bounds[first])
+		{
+			// join adjacent intervals
+			replace(first - 1, first + 1, null, 0);
+		}
+
+		if (anchor >= row + count)
+		{
+			anchor -= count;
+		}
+		else if (anchor >= row)
+		{
+			anchor = -1;
+		}
+	}
+
+	/**
+	 * Replace bounds.
+	 */
+	private void replace(int from, int to, int[] insert, int inserts)
+	{
+		int newSize = size - (to - from) + inserts;
+		if (newSize > bounds.length)
+		{
+			int[] grown = new int[Math.max(newSize, bounds.length * 2)];
+			System.arraycopy(bounds, 0, grown, 0, size);
+			bounds = grown;
+		}
+		System.arraycopy(bounds, to, bounds, from + inserts, size - to);
+		for (int i = 0; i < inserts; i++)
+		{
+			bounds[from + i] = insert[i];
+		}
+		size = newSize;
+	}
+
+	/**
+	 * Count of bounds smaller than the given row.
+	 */
+	private int countBefore(int row)
+	{
+		int low = 0;
+		int high = size;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (bounds[middle] < row)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Count of bounds smaller than or equal to the given row.
+	 */
+	private int countUpTo(int row)
+	{
+		return countBefore(row + 1);
+	}
+}
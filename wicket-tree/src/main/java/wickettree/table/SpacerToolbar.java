@@ -0,0 +1,93 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.table;
+
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+import wickettree.TableTree;
+import wickettree.VirtualTableTree;
+
+/**
+ * A toolbar taking up the height of rows not rendered. Always rendered, so its
+ * height can be updated on an AJAX request, but hidden if no rows are left out.
+ * 
+ * @see VirtualTableTree
+ */
+public class SpacerToolbar extends AbstractToolbar
+{
+	private static final long serialVersionUID = 1L;
+
+	private final IModel<Integer> heightModel;
+
+	private final WebMarkupContainer td;
+
+	/**
+	 * @param table
+	 *            table to add to
+	 * @param heightModel
+	 *            model of the height in pixels
+	 */
+	public SpacerToolbar(final TableTree<?> table, final IModel<Integer> heightModel)
+	{
+		super(table);
+
+		this.heightModel = heightModel;
+
+		td = new WebMarkupContainer("td");
+		td.setOutputMarkupId(true);
+		add(td);
+
+		td.add(new AttributeModifier("colspan", new Model<String>(String.valueOf(table
+				.getColumns().size()))));
+		td.add(new AttributeModifier("style", new AbstractReadOnlyModel<String>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public String getObject()
+			{
+				int height = heightModel.getObject();
+				if (height > 0)
+				{
+					return "height: " + height + "px;";
+				}
+				return "display: none;";
+			}
+		}));
+	}
+
+	/**
+	 * Overriden to update the height.
+	 */
+	@Override
+	public void onRowsUpdated(AjaxRequestTarget target)
+	{
+		target.add(td);
+	}
+
+	@Override
+	protected void onDetach()
+	{
+		super.onDetach();
+
+		heightModel.detach();
+	}
+}
@@ -16,6 +16,7 @@
 package wickettree.table;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.extensions.markup.html.repeater.data.grid.ICellPopulator;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.model.IModel;
@@ -53,8 +54,21 @@ public class TreeColumn<T> extends AbstractTreeColumn<T>
 		Component nodeComponent = getTree().newNodeComponent(componentId,
 				nodeModel.getWrappedModel());
 
-		nodeComponent.add(new NodeBorder(nodeModel.getBranches()));
+		nodeComponent.add(newNodeBorder(nodeModel));
 
 		cellItem.add(nodeComponent);
 	}
+
+	/**
+	 * Create the border of a node component, by default a {@link NodeBorder}.
+	 * Override to return a {@link FlatNodeBorder} for smaller markup.
+	 * 
+	 * @param nodeModel
+	 *            model of the node
+	 * @return border behavior
+	 */
+	protected Behavior newNodeBorder(NodeModel<T> nodeModel)
+	{
+		return new NodeBorder(nodeModel);
+	}
 }
@@ -15,16 +15,33 @@
  */
 package wickettree.table;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.wicket.markup.repeater.data.IDataProvider;
 import org.apache.wicket.model.IModel;
 
+import wickettree.IBatchTreeProvider;
 import wickettree.ITreeProvider;
+import wickettree.util.ChildrenBatch;
+import wickettree.util.Keys;
 
 /**
  * An adapter of a {@link ITreeProvider} to a {@link IDataProvider}.
  * 
+ * The number of visible rows is counted once per request and updated for single
+ * branches, see {@link #update(Object)}. By default the counts are dropped on
+ * detachment, so changes of the provider's nodes are picked up in the next
+ * request. If counts are kept across requests instead, any change of the
+ * expanded nodes or the provider's nodes has to be followed by an update.
+ * If the provider is an {@link IBatchTreeProvider} all children of expanded
+ * nodes are fetched level by level.
+ * 
+ * @see #setKeepCounts(boolean)
+ * 
  * @author Sven Meier
  */
 public abstract class TreeDataProvider<T> implements ITreeDataProvider<T>
@@ -33,32 +50,196 @@ public abstract class TreeDataProvider<T> implements ITreeDataProvider<T>
 
 	private final ITreeProvider<T> provider;
 
+	private final ChildrenBatch<T> children;
+
 	private Branch currentBranch;
 
 	private Branch previousBranch;
 
-	private int size = -1;
+	/**
+	 * Count of the roots, <code>null</code> if not counted yet.
+	 */
+	private transient Count roots;
+
+	/**
+	 * Counts of all visible nodes.
+	 */
+	private transient Map<Object, Count> counts;
+
+	private boolean keepCounts;
 
 	public TreeDataProvider(ITreeProvider<T> provider)
 	{
 		this.provider = provider;
+
+		children = new ChildrenBatch<T>(provider)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean isExpanded(T t)
+			{
+				return iterateChildren(t);
+			}
+		};
+	}
+
+	/**
+	 * Keep the counts of visible rows across requests, saving the counting of
+	 * all rows in each request. Each change of the provider's nodes has to be
+	 * followed by an {@link #update(Object)} then.
+	 * 
+	 * @param keepCounts
+	 *            <code>true</code> to keep counts on detachment
+	 */
+	public void setKeepCounts(boolean keepCounts)
+	{
+		this.keepCounts = keepCounts;
+	}
+
+	/**
+	 * Are the counts of visible rows kept across requests.
+	 * 
+	 * @return defaults to <code>false</code>
+	 */
+	public boolean isKeepCounts()
+	{
+		return keepCounts;
 	}
 
 	public int size()
 	{
-		if (size == -1)
+		if (roots == null)
+		{
+			roots = new Count(null, null);
+			counts = new HashMap<Object, Count>();
+
+			count(roots, children.fetch(provider.getRoots(), Integer.MAX_VALUE));
+		}
+		return roots.size;
+	}
+
+	/**
+	 * Update the count of visible rows for the given node, e.g. after it was
+	 * expanded or collapsed. Only the branch of the given node is counted again.
+	 * 
+	 * @param t
+	 *            node to update or <code>null</code> to update all nodes
+	 */
+	public void update(T t)
+	{
+		if (roots == null)
+		{
+			return;
+		}
+
+		if (t == null)
+		{
+			roots = null;
+			counts = null;
+			return;
+		}
+
+		Count count = counts.get(Keys.key(provider, t));
+
+		if (count != null)
+		{
+			int size = count.size;
+
+			uncount(count);
+			if (iterateChildren(t))
+			{
+				count(count, children.fetch(children.getChildren(t), Integer.MAX_VALUE));
+			}
+
+			int delta = count.size - size;
+			for (Count parent = count.parent; parent != null; parent = parent.parent)
+			{
+				parent.size += delta;
+			}
+		}
+	}
+
+	/**
+	 * Get the row of the given node, using the counts of visible rows.
+	 * 
+	 * @param t
+	 *            node
+	 * @return row index or <code>-1</code> if the node is not visible
+	 */
+	public int getRow(T t)
+	{
+		size();
+
+		Count count = counts.get(Keys.key(provider, t));
+
+		if (count == null)
+		{
+			return -1;
+		}
+
+		int row = 0;
+		for (Count parent = count.parent; parent != null; count = parent, parent = parent.parent)
+		{
+			for (Count sibling : parent.children)
+			{
+				if (sibling == count)
+				{
+					break;
+				}
+				row += 1 + sibling.size;
+			}
+
+			if (parent != roots)
+			{
+				// row of parent
+				row++;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Count the given children and their visible descendants.
+	 */
+	private void count(Count parent, Iterator<? extends T> iterator)
+	{
+		parent.children = new ArrayList<Count>();
+
+		while (iterator.hasNext())
 		{
-			size = 0;
+			T child = iterator.next();
+
+			Object key = Keys.key(provider, child);
+
+			Count count = new Count(parent, key);
+			counts.put(key, count);
+			if (iterateChildren(child))
+			{
+				count(count, children.getChildren(child));
+			}
+
+			parent.children.add(count);
+			parent.size += 1 + count.size;
+		}
+	}
 
-			Iterator<? extends T> iterator = iterator(0, Integer.MAX_VALUE);
-			while (iterator.hasNext())
+	/**
+	 * Remove all counts of descendants of the given count.
+	 */
+	private void uncount(Count count)
+	{
+		if (count.children != null)
+		{
+			for (Count child : count.children)
 			{
-				iterator.next();
-				
-				size++;
+				counts.remove(child.key);
+
+				uncount(child);
 			}
+			count.children = null;
 		}
-		return size;
+		count.size = 0;
 	}
 
 	public Iterator<? extends T> iterator(int first, int count)
@@ -95,7 +276,9 @@ public abstract class TreeDataProvider<T> implements ITreeDataProvider<T>
 
 				if (iterateChildren(next))
 				{
-					currentBranch = new Branch(previousBranch, provider.getChildren(next));
+					// fetch children of expanded children too
+					currentBranch = new Branch(previousBranch, children.fetch(children
+							.getChildren(next), 1));
 				}
 
 				return next;
@@ -107,14 +290,58 @@ public abstract class TreeDataProvider<T> implements ITreeDataProvider<T>
 			}
 		};
 
-		for (int i = 0; i < first; i++)
+		if (first > 0)
 		{
-			iterator.next();
+			seek(iterator, first);
 		}
 
 		return iterator;
 	}
 
+	/**
+	 * Seek to the given row, skipping complete branches whose rows are counted
+	 * already.
+	 * 
+	 * @see #size()
+	 */
+	private void seek(Iterator<T> iterator, int first)
+	{
+		size();
+
+		while (first > 0 && iterator.hasNext())
+		{
+			T next = currentBranch.next();
+
+			int rows = 1 + descendants(next);
+			if (rows > 0 && rows <= first)
+			{
+				first -= rows;
+			}
+			else
+			{
+				first--;
+
+				currentBranch = new Branch(currentBranch, children.getChildren(next));
+			}
+		}
+	}
+
+	/**
+	 * Get the count of visible descendants of the given node.
+	 * 
+	 * @return count or <code>-1</code> if not counted
+	 */
+	private int descendants(T t)
+	{
+		Count count = counts.get(Keys.key(provider, t));
+
+		if (count == null)
+		{
+			return iterateChildren(t) ? -1 : 0;
+		}
+		return count.size;
+	}
+
 	/**
 	 * Hook method to decide wether the given node's children should be
 	 * iterated.
@@ -130,48 +357,67 @@ public abstract class TreeDataProvider<T> implements ITreeDataProvider<T>
 	{
 		currentBranch = null;
 		previousBranch = null;
-		size = -1;
+
+		if (!keepCounts)
+		{
+			roots = null;
+			counts = null;
+		}
+
+		children.detach();
 	}
 
-	private class Branch implements Iterator<T>
+	/**
+	 * The count of visible descendants of a node.
+	 */
+	private static class Count
 	{
-		private Branch parent;
+		private final Count parent;
 
-		private Iterator<? extends T> children;
+		private final Object key;
 
-		public Branch(Branch parent, Iterator<? extends T> children)
+		private List<Count> children;
+
+		private int size;
+
+		public Count(Count parent, Object key)
 		{
 			this.parent = parent;
-			this.children = children;
+			this.key = key;
 		}
+	}
 
-		public NodeModel<T> wrapModel(IModel<T> model)
-		{
-			boolean[] branches = new boolean[getDepth()];
-
-			Branch branch = this;
-			for (int c = branches.length - 1; c >= 0; c--)
-			{
-				branches[c] = branch.hasNext();
+	private class Branch implements Iterator<T>
+	{
+		private Branch parent;
 
-				branch = branch.parent;
-			}
+		private Iterator<? extends T> children;
 
-			return new NodeModel<T>(model, branches);
-		}
+		/**
+		 * Branches of the parental nodes, shared by all children.
+		 */
+		private NodeModel<T> prefix;
 
-		public int getDepth()
+		public Branch(Branch parent, Iterator<? extends T> children)
 		{
+			this.parent = parent;
+			this.children = children;
+
 			if (parent == null)
 			{
-				return 1;
+				prefix = new NodeModel<T>(null, new boolean[0]);
 			}
 			else
 			{
-				return parent.getDepth() + 1;
+				prefix = new NodeModel<T>(null, parent.prefix, parent.hasNext());
 			}
 		}
 
+		public NodeModel<T> wrapModel(IModel<T> model)
+		{
+			return new NodeModel<T>(model, prefix, hasNext());
+		}
+
 		public boolean hasNext()
 		{
 			return children.hasNext();
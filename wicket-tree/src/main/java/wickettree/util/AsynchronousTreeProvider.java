@@ -0,0 +1,459 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.model.IModel;
+
+import wickettree.ITreeProvider;
+
+/**
+ * Wrapper of a ITreeProvider loading children asynchronously, so a slow
+ * provider does not block the request. Until loaded children are marked
+ * intermediate, thus wrap this provider with an
+ * {@link IntermediateTreeProvider} to update branches when loading completes:
+ * Completion of each load is signaled on the {@link Notifier}.
+ * 
+ * Loaded children are kept as models for at most {@link #getMaxLoaded()}
+ * nodes, so they don't have to be loaded again until {@link #reset(Object)}.
+ * Whether each loaded child has children is determined while loading too, so
+ * only the roots are asked synchronously. Loaded children and loads in progress
+ * are kept as long as the page is not serialized, otherwise loading is
+ * restarted.
+ * 
+ * Note that {@link ITreeProvider#getChildren(Object)} and
+ * {@link ITreeProvider#hasChildren(Object)} of the loading provider are called
+ * on pool threads outside of any request. If no separate loading provider is
+ * given, the wrapped provider is used for loading and has to be thread-safe,
+ * since it is used by the request thread at the same time.
+ * 
+ * @see #getExecutor()
+ * @see #AsynchronousTreeProvider(ITreeProvider, ITreeProvider)
+ * @see IntermediateTreeProvider#intermediate(Iterator, String)
+ * 
+ * @author Sven Meier
+ */
+public class AsynchronousTreeProvider<T> implements ITreeProvider<T>
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private ITreeProvider<T> provider;
+
+	private ITreeProvider<T> loader;
+
+	/**
+	 * Loads in progress by node models.
+	 */
+	private transient Map<IModel<T>, Load> loads;
+
+	/**
+	 * Loaded children by node models, recently accessed last.
+	 */
+	private transient Map<IModel<T>, List<IModel<T>>> loaded;
+
+	/**
+	 * Whether loaded children have children by their models.
+	 */
+	private transient Map<IModel<T>, Boolean> branches;
+
+	/**
+	 * Wrap the given thread-safe provider, using it for loading too.
+	 * 
+	 * @param provider
+	 *            provider to wrap
+	 */
+	public AsynchronousTreeProvider(ITreeProvider<T> provider)
+	{
+		this(provider, provider);
+	}
+
+	/**
+	 * Wrap the given provider, loading children with a separate provider,
+	 * which is used by one pool thread at a time and detached after each load.
+	 * 
+	 * @param provider
+	 *            provider to wrap
+	 * @param loader
+	 *            provider to load children with
+	 */
+	public AsynchronousTreeProvider(ITreeProvider<T> provider, ITreeProvider<T> loader)
+	{
+		this.provider = provider;
+		this.loader = loader;
+	}
+
+	public Iterator<? extends T> getRoots()
+	{
+		return provider.getRoots();
+	}
+
+	/**
+	 * Answered from the loaded children if possible, synchronously by the
+	 * wrapped provider otherwise.
+	 */
+	public boolean hasChildren(T object)
+	{
+		if (branches != null)
+		{
+			IModel<T> model = provider.model(object);
+			Boolean branch = branches.get(model);
+			model.detach();
+
+			if (branch != null)
+			{
+				return branch.booleanValue();
+			}
+		}
+		return provider.hasChildren(object);
+	}
+
+	/**
+	 * Get the loaded children or start to load them.
+	 * 
+	 * @return loaded children or intermediate children if not loaded yet
+	 */
+	public Iterator<? extends T> getChildren(final T object)
+	{
+		IModel<T> model = provider.model(object);
+
+		List<IModel<T>> children = getLoaded().get(model);
+		if (children == null)
+		{
+			Load load = load(model, object);
+			if (load != null)
+			{
+				model.detach();
+
+				return IntermediateTreeProvider.intermediate(new ArrayList<T>().iterator(),
+						load.token);
+			}
+			children = getLoaded().get(model);
+			if (children == null)
+			{
+				model.detach();
+
+				return IntermediateTreeProvider.intermediate(new ArrayList<T>().iterator());
+			}
+		}
+		else
+		{
+			model.detach();
+		}
+
+		List<T> objects = new ArrayList<T>(children.size());
+		for (IModel<T> child : children)
+		{
+			objects.add(child.getObject());
+		}
+		return objects.iterator();
+	}
+
+	/**
+	 * Start loading children or take them if loading completed.
+	 * 
+	 * @return load in progress or <code>null</code> if not started or
+	 *         completed
+	 */
+	private Load load(IModel<T> model, final T object)
+	{
+		if (loads == null)
+		{
+			loads = new HashMap<IModel<T>, Load>();
+		}
+
+		Load load = loads.get(model);
+		if (load == null)
+		{
+			final String token = Notifier.newToken();
+			try
+			{
+				load = new Load(token, getExecutor().submit(new Callable<List<Child<T>>>()
+				{
+					public List<Child<T>> call() throws Exception
+					{
+						try
+						{
+							if (loader == provider)
+							{
+								return load(object);
+							}
+
+							synchronized (loader)
+							{
+								try
+								{
+									return load(object);
+								}
+								finally
+								{
+									loader.detach();
+								}
+							}
+						}
+						finally
+						{
+							Notifier.complete(token);
+						}
+					}
+				}));
+			}
+			catch (RejectedExecutionException tryAgainLater)
+			{
+				return null;
+			}
+			loads.put(model, load);
+		}
+
+		if (!load.future.isDone())
+		{
+			return load;
+		}
+		loads.remove(model);
+
+		List<IModel<T>> children = new ArrayList<IModel<T>>();
+		try
+		{
+			for (Child<T> child : load.future.get())
+			{
+				IModel<T> childModel = provider.model(child.object);
+				children.add(childModel);
+				getBranches().put(childModel, child.branch);
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+
+			throw new WicketRuntimeException(ex);
+		}
+		catch (ExecutionException ex)
+		{
+			throw new WicketRuntimeException(ex.getCause());
+		}
+		getLoaded().put(model, children);
+
+		return null;
+	}
+
+	/**
+	 * Load the children of the given node on a pool thread.
+	 */
+	private List<Child<T>> load(T object)
+	{
+		List<Child<T>> children = new ArrayList<Child<T>>();
+
+		Iterator<? extends T> iterator = loader.getChildren(object);
+		while (iterator.hasNext())
+		{
+			T child = iterator.next();
+			children.add(new Child<T>(child, loader.hasChildren(child)));
+		}
+
+		return children;
+	}
+
+		private Map<IModel<T>, List<IModel<T>>> getLoaded()
+	{
+		if (loaded == null)
+		{
+			loaded = new LinkedHashMap<IModel<T>, List<IModel<T>>>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<IModel<T>, List<IModel<T>>> eldest)
+				{
+					if (size() > getMaxLoaded())
+					{
+						forgetBranches(eldest.getValue());
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+		return loaded;
+	}
+
+	private Map<IModel<T>, Boolean> getBranches()
+	{
+		if (branches == null)
+		{
+			branches = new HashMap<IModel<T>, Boolean>();
+		}
+		return branches;
+	}
+
+	private void forgetBranches(List<IModel<T>> children)
+	{
+		if (children != null && branches != null)
+		{
+			for (IModel<T> child : children)
+			{
+				branches.remove(child);
+			}
+		}
+	}
+
+	/**
+	 * Get the maximum count of nodes to keep loaded children for.
+	 * 
+	 * @return maximum count, <code>100</code> by default
+	 */
+	protected int getMaxLoaded()
+	{
+		return 100;
+	}
+
+	/**
+	 * Is loading of children of the given node in progress.
+	 * 
+	 * @param object
+	 *            node
+	 * @return <code>true</code> if loading
+	 */
+	public boolean isLoading(T object)
+	{
+		if (loads == null)
+		{
+			return false;
+		}
+
+		IModel<T> model = provider.model(object);
+		try
+		{
+			return loads.containsKey(model);
+		}
+		finally
+		{
+			model.detach();
+		}
+	}
+
+	/**
+	 * Forget the loaded children of the given node, so they are loaded again.
+	 * 
+	 * @param object
+	 *            node
+	 */
+	public void reset(T object)
+	{
+		IModel<T> model = provider.model(object);
+
+		forgetBranches(getLoaded().remove(model));
+
+		model.detach();
+	}
+
+	/**
+	 * Forget all loaded children, so they are loaded again.
+	 */
+	public void reset()
+	{
+		loaded = null;
+		branches = null;
+	}
+
+	public IModel<T> model(T object)
+	{
+		return provider.model(object);
+	}
+
+	public void detach()
+	{
+		provider.detach();
+
+		if (loads != null)
+		{
+			for (IModel<T> model : loads.keySet())
+			{
+				model.detach();
+			}
+		}
+
+		if (loaded != null)
+		{
+			for (Map.Entry<IModel<T>, List<IModel<T>>> entry : loaded.entrySet())
+			{
+				entry.getKey().detach();
+
+				for (IModel<T> child : entry.getValue())
+				{
+					child.detach();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the executor to load children with - by default a bounded pool of
+	 * daemon threads shared by all instances, shut down with the application.
+	 * Loading is retried later if the executor rejects a load.
+	 * 
+	 * Override to use an executor managed by your application.
+	 * 
+	 * @return executor
+	 */
+	protected ExecutorService getExecutor()
+	{
+		return SharedExecutors.get("AsynchronousTreeProvider", 4);
+	}
+
+	/**
+	 * A load in progress.
+	 */
+	private class Load
+	{
+		private final String token;
+
+		private final Future<List<Child<T>>> future;
+
+		public Load(String token, Future<List<Child<T>>> future)
+		{
+			this.token = token;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * A loaded child.
+	 */
+	private static class Child<T>
+	{
+		private final T object;
+
+		private final Boolean branch;
+
+		public Child(T object, boolean branch)
+		{
+			this.object = object;
+			this.branch = Boolean.valueOf(branch);
+		}
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.wicket.model.IDetachable;
+import org.apache.wicket.model.IModel;
+
+import wickettree.AbstractTree;
+import wickettree.ITreeProvider;
+
+/**
+ * An expansion of all nodes breadth-first, spending a limited budget of nodes
+ * on each call to {@link #next()}, e.g. one call per request:
+ * 
+ * <pre>
+ * expansion.start();
+ * ...
+ * for (T t : expansion.next()) {
+ * 	tree.expand(t);
+ * }
+ * if (expansion.isRunning()) {
+ * 	// show &quot;continue&quot;
+ * }
+ * </pre>
+ * 
+ * Since nodes are expanded level by level, each call adds at most a budget of
+ * visible nodes (plus the children of a single node) to the tree. Expanding
+ * the returned nodes one after another lets the tree update the branches of
+ * these nodes only.
+ * 
+ * Pending nodes are kept as keys, grouped by the key path of their parent, so
+ * no nodes are held across requests. Each group is resolved by walking its
+ * path down from the roots or the start node.
+ * 
+ * @see AbstractTree#expand(Object)
+ * @see Keys
+ * 
+ * @author Sven Meier
+ */
+public class BreadthFirstExpansion<T> implements IDetachable
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private ITreeProvider<T> provider;
+
+	private int budget;
+
+	/**
+	 * Model of the start node, <code>null</code> when started at the roots.
+	 */
+	private IModel<T> start;
+
+	/**
+	 * Groups of nodes still to expand, level by level.
+	 */
+	private LinkedList<Group> pending = new LinkedList<Group>();
+
+	/**
+	 * Expand with the given budget of nodes.
+	 * 
+	 * @param provider
+	 *            provider of nodes
+	 * @param budget
+	 *            count of nodes to spend on each {@link #next()}
+	 */
+	public BreadthFirstExpansion(ITreeProvider<T> provider, int budget)
+	{
+		if (provider == null)
+		{
+			throw new IllegalArgumentException("argument [provider] cannot be null");
+		}
+		if (budget < 1)
+		{
+			throw new IllegalArgumentException("argument [budget] must be positive");
+		}
+
+		this.provider = provider;
+		this.budget = budget;
+	}
+
+	/**
+	 * Start expansion at the roots.
+	 */
+	public void start()
+	{
+		stop();
+
+		enqueue(new Object[0], provider.getRoots());
+	}
+
+	/**
+	 * Start expansion at the given node.
+	 * 
+	 * @param t
+	 *            node to start at
+	 */
+	public void start(T t)
+	{
+		stop();
+
+		if (provider.hasChildren(t))
+		{
+			start = provider.model(t);
+			start.detach();
+
+			enqueue(new Object[0], Collections.singletonList(t).iterator());
+		}
+	}
+
+	/**
+	 * Stop expansion.
+	 */
+	public void stop()
+	{
+		pending.clear();
+
+		if (start != null)
+		{
+			start.detach();
+			start = null;
+		}
+	}
+
+	/**
+	 * Is expansion still running.
+	 * 
+	 * @return <code>true</code> if nodes are pending
+	 */
+	public boolean isRunning()
+	{
+		return !pending.isEmpty();
+	}
+
+	/**
+	 * Get the next pending nodes to expand until the budget is spent.
+	 * 
+	 * @return nodes to expand, parents preceding their children
+	 */
+	public List<T> next()
+	{
+		List<T> next = new ArrayList<T>();
+
+		int spent = 0;
+		while (spent < budget && !pending.isEmpty())
+		{
+			Group group = pending.getFirst();
+
+			Iterator<? extends T> candidates = resolve(group.path);
+			while (spent < budget && !group.keys.isEmpty() && candidates.hasNext())
+			{
+				T t = candidates.next();
+
+				Object key = Keys.key(provider, t);
+				if (group.keys.remove(key))
+				{
+					next.add(t);
+
+					spent += enqueue(group.child(key), provider.getChildren(t));
+				}
+			}
+
+			if (group.keys.isEmpty() || !candidates.hasNext())
+			{
+				// done or remaining nodes are gone
+				pending.removeFirst();
+			}
+		}
+
+		return next;
+	}
+
+	/**
+	 * Resolve the nodes of the given path.
+	 * 
+	 * @return children of the last node in the path
+	 */
+	private Iterator<? extends T> resolve(Object[] path)
+	{
+		Iterator<? extends T> children;
+		if (start == null)
+		{
+			children = provider.getRoots();
+		}
+		else
+		{
+			children = Collections.singletonList(start.getObject()).iterator();
+		}
+
+		for (Object key : path)
+		{
+			T parent = null;
+			while (children.hasNext())
+			{
+				T child = children.next();
+				if (Keys.key(provider, child).equals(key))
+				{
+					parent = child;
+					break;
+				}
+			}
+
+			if (parent == null)
+			{
+				return Collections.<T> emptyList().iterator();
+			}
+			children = provider.getChildren(parent);
+		}
+
+		return children;
+	}
+
+	/**
+	 * Enqueue the given nodes with children.
+	 * 
+	 * @param path
+	 *            path of the nodes' parent
+	 * @return count of nodes
+	 */
+	private int enqueue(Object[] path, Iterator<? extends T> iterator)
+	{
+		Set<Object> keys = new LinkedHashSet<Object>();
+
+		int count = 0;
+		while (iterator.hasNext())
+		{
+			T t = iterator.next();
+
+			if (provider.hasChildren(t))
+			{
+				keys.add(Keys.key(provider, t));
+			}
+
+			count++;
+		}
+
+		if (!keys.isEmpty())
+		{
+			pending.add(new Group(path, keys));
+		}
+
+		return count;
+	}
+
+	public void detach()
+	{
+		if (start != null)
+		{
+			start.detach();
+		}
+	}
+
+	/**
+	 * Keys of pending nodes with a common parent.
+	 */
+	private static class Group implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Keys of the parent's path.
+		 */
+		private final Object[] path;
+
+		private final Set<Object> keys;
+
+		public Group(Object[] path, Set<Object> keys)
+		{
+			this.path = path;
+			this.keys = keys;
+		}
+
+		/**
+		 * Get the path of the given child.
+		 */
+		public Object[] child(Object key)
+		{
+			Object[] child = new Object[path.length + 1];
+			System.arraycopy(path, 0, child, 0, path.length);
+			child[path.length] = key;
+			return child;
+		}
+	}
+}
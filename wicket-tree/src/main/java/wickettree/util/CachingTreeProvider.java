@@ -0,0 +1,314 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.model.IModel;
+
+import wickettree.IBatchTreeProvider;
+import wickettree.IKeyingTreeProvider;
+import wickettree.ITreeProvider;
+
+/**
+ * Wrapper of a ITreeProvider remembering roots, children and models of nodes
+ * until detachment, so each node is queried from the wrapped provider once per
+ * request only.
+ * 
+ * Nodes are remembered by identity. Models are shared until detachment, thus
+ * when wrapping an {@link IntermediateTreeProvider}, wrap this provider with it
+ * instead.
+ * 
+ * Use {@link #of(ITreeProvider)} to keep the keys of a wrapped
+ * {@link IKeyingTreeProvider}.
+ * 
+ * @see #detach()
+ * 
+ * @author Sven Meier
+ */
+public class CachingTreeProvider<T> implements IBatchTreeProvider<T>
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private ITreeProvider<T> provider;
+
+	private transient List<T> roots;
+
+	private transient Map<T, Node> nodes;
+
+	/**
+	 * Wrap the given provider.
+	 * 
+	 * @param provider
+	 *            provider to wrap
+	 */
+	public CachingTreeProvider(ITreeProvider<T> provider)
+	{
+		this.provider = provider;
+	}
+
+	/**
+	 * Wrap the given provider, keying nodes if the provider is a
+	 * {@link IKeyingTreeProvider} too.
+	 * 
+	 * @param provider
+	 *            provider to wrap
+	 * @return caching provider
+	 */
+	public static <T> CachingTreeProvider<T> of(ITreeProvider<T> provider)
+	{
+		if (provider instanceof IKeyingTreeProvider<?>)
+		{
+			return new Keying<T>((IKeyingTreeProvider<T>)provider);
+		}
+		return new CachingTreeProvider<T>(provider);
+	}
+
+	public Iterator<? extends T> getRoots()
+	{
+		if (roots == null)
+		{
+			roots = list(provider.getRoots());
+		}
+		return roots.iterator();
+	}
+
+	public boolean hasChildren(T object)
+	{
+		Node node = node(object);
+		if (node.hasChildren == null)
+		{
+			node.hasChildren = provider.hasChildren(object);
+		}
+		return node.hasChildren;
+	}
+
+	public Iterator<? extends T> getChildren(T object)
+	{
+		Node node = node(object);
+		if (node.children == null)
+		{
+			node.children = list(provider.getChildren(object));
+		}
+		return node.children.iterator();
+	}
+
+	/**
+	 * Get the children of all given objects, delegating to the wrapped provider
+	 * in a single batch if it is a {@link IBatchTreeProvider} too.
+	 */
+	public List<Iterator<? extends T>> getChildren(List<T> objects)
+	{
+		if (provider instanceof IBatchTreeProvider<?>)
+		{
+			List<T> missing = new ArrayList<T>();
+			for (T object : objects)
+			{
+				if (node(object).children == null)
+				{
+					missing.add(object);
+				}
+			}
+
+			if (!missing.isEmpty())
+			{
+				List<Iterator<? extends T>> children = ((IBatchTreeProvider<T>)provider)
+						.getChildren(missing);
+				for (int m = 0; m < missing.size(); m++)
+				{
+					node(missing.get(m)).children = list(children.get(m));
+				}
+			}
+		}
+
+		List<Iterator<? extends T>> children = new ArrayList<Iterator<? extends T>>();
+		for (T object : objects)
+		{
+			children.add(getChildren(object));
+		}
+		return children;
+	}
+
+	/**
+	 * The returned model is shared until detachment of this provider, detaching
+	 * it has no effect until then.
+	 */
+	public IModel<T> model(T object)
+	{
+		Node node = node(object);
+		if (node.model == null)
+		{
+			node.model = new CachedModel<T>(provider.model(object));
+		}
+		return node.model;
+	}
+
+	/**
+	 * Forget everything and detach the wrapped provider.
+	 */
+	public void detach()
+	{
+		if (nodes != null)
+		{
+			for (Node node : nodes.values())
+			{
+				if (node.model != null)
+				{
+					node.model.release();
+				}
+			}
+			nodes = null;
+		}
+		roots = null;
+
+		provider.detach();
+	}
+
+	private Node node(T object)
+	{
+		if (nodes == null)
+		{
+			nodes = new IdentityHashMap<T, Node>();
+		}
+
+		Node node = nodes.get(object);
+		if (node == null)
+		{
+			node = new Node();
+			nodes.put(object, node);
+		}
+		return node;
+	}
+
+	private List<T> list(Iterator<? extends T> iterator)
+	{
+		List<T> list = new ArrayList<T>();
+		while (iterator.hasNext())
+		{
+			list.add(iterator.next());
+		}
+		return list;
+	}
+
+	/**
+	 * A caching provider keeping the keys of a wrapped
+	 * {@link IKeyingTreeProvider}.
+	 */
+	public static class Keying<T> extends CachingTreeProvider<T> implements IKeyingTreeProvider<T>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private IKeyingTreeProvider<T> provider;
+
+		/**
+		 * Wrap the given provider.
+		 * 
+		 * @param provider
+		 *            provider to wrap
+		 */
+		public Keying(IKeyingTreeProvider<T> provider)
+		{
+			super(provider);
+
+			this.provider = provider;
+		}
+
+		public Object key(T object)
+		{
+			return provider.key(object);
+		}
+	}
+
+	/**
+	 * Everything known about a single node.
+	 */
+	private class Node
+	{
+		private Boolean hasChildren;
+
+		private List<T> children;
+
+		private CachedModel<T> model;
+	}
+
+	/**
+	 * A model shared until detachment of the provider.
+	 */
+	private static class CachedModel<T> implements IModel<T>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private IModel<T> model;
+
+		private transient boolean cached = true;
+
+		public CachedModel(IModel<T> model)
+		{
+			this.model = model;
+		}
+
+		public T getObject()
+		{
+			return model.getObject();
+		}
+
+		public void setObject(T object)
+		{
+			model.setObject(object);
+		}
+
+		public void detach()
+		{
+			if (!cached)
+			{
+				model.detach();
+			}
+		}
+
+		/**
+		 * No longer shared, detach the wrapped model.
+		 */
+		void release()
+		{
+			cached = false;
+
+			model.detach();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return model.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (obj instanceof CachedModel<?>)
+			{
+				CachedModel<?> other = (CachedModel<?>)obj;
+
+				return this.model.equals(other.model);
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import wickettree.AbstractTree;
+import wickettree.IParentTreeProvider;
+import wickettree.content.CheckedFolder;
+
+/**
+ * An index of checked nodes, where checking a node checks all its descendants
+ * too. Each node is either checked completely, partially or not at all.
+ * 
+ * Instead of storing the state of each node, only partially checked nodes and
+ * the checked subtrees below them are kept, with counters of checked and
+ * partially checked children. A change of a node's state updates these
+ * counters along its ancestors only:
+ * 
+ * <pre>
+ * List&lt;Foo&gt; changed = index.check(foo, true);
+ * tree.updateBranch(foo, target);
+ * for (Foo ancestor : changed) {
+ * 	tree.updateNode(ancestor, target);
+ * }
+ * </pre>
+ * 
+ * Lookups are not constant: {@link #getChecked(Object)} walks up the ancestors
+ * of a node until it finds an entry, i.e. it takes time proportional to the
+ * node's depth. {@link #check(Object, boolean)} additionally iterates the
+ * children of each node whose checked subtree is split or merged, and of each
+ * ancestor getting its first entry.
+ * 
+ * @see CheckedFolder
+ * 
+ * @author Sven Meier
+ */
+public class CheckedIndex<T> implements Serializable
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private IParentTreeProvider<T> provider;
+
+	/**
+	 * Entries of partially checked nodes and checked subtrees, by node keys.
+	 */
+	private Map<Object, Entry> entries = new HashMap<Object, Entry>();
+
+	public CheckedIndex(IParentTreeProvider<T> provider)
+	{
+		if (provider == null)
+		{
+			throw new IllegalArgumentException("argument [provider] cannot be null");
+		}
+
+		this.provider = provider;
+	}
+
+	/**
+	 * Get the checked state of the given node, walking up its ancestors if it
+	 * has no entry itself.
+	 * 
+	 * @param t
+	 *            node
+	 * @return checked state
+	 */
+	public Checked getChecked(T t)
+	{
+		if (entries.isEmpty())
+		{
+			return Checked.NONE;
+		}
+
+		Entry entry = entries.get(Keys.key(provider, t));
+		if (entry != null)
+		{
+			return entry.checked;
+		}
+
+		// inherit from checked subtree
+		for (T parent = provider.getParent(t); parent != null; parent = provider
+				.getParent(parent))
+		{
+			entry = entries.get(Keys.key(provider, parent));
+			if (entry != null)
+			{
+				return entry.checked == Checked.ALL ? Checked.ALL : Checked.NONE;
+			}
+		}
+		return Checked.NONE;
+	}
+
+	/**
+	 * Check or uncheck the given node and all its descendants.
+	 * 
+	 * @param t
+	 *            node
+	 * @param check
+	 *            check or uncheck
+	 * @return ancestors whose checked state changed
+	 */
+	public List<T> check(T t, boolean check)
+	{
+		Map<Object, T> changed = new LinkedHashMap<Object, T>();
+
+		Checked checked = check ? Checked.ALL : Checked.NONE;
+		if (getChecked(t) != checked)
+		{
+			Object key = Keys.key(provider, t);
+			if (!check && !entries.containsKey(key))
+			{
+				split(t, changed);
+			}
+
+			Entry entry = entries.get(key);
+			Checked old = Checked.NONE;
+			if (entry != null)
+			{
+				old = entry.checked;
+
+				clear(t, entry);
+			}
+
+			if (check)
+			{
+				entries.put(key, new Entry(Checked.ALL));
+			}
+			else
+			{
+				entries.remove(key);
+			}
+
+			propagate(t, old, checked, changed);
+		}
+
+		return new ArrayList<T>(changed.values());
+	}
+
+	/**
+	 * Uncheck all nodes.
+	 */
+	public void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Split the checked subtree containing the given node, so the node gets its
+	 * own entry.
+	 */
+	private void split(T t, Map<Object, T> changed)
+	{
+		List<T> path = TreePaths.getPath(provider, t);
+
+		int start = path.size() - 1;
+		while (!entries.containsKey(Keys.key(provider, path.get(start))))
+		{
+			start--;
+		}
+
+		for (int i = start; i < path.size() - 1; i++)
+		{
+			T node = path.get(i);
+			Object key = Keys.key(provider, node);
+
+			Entry entry = entries.get(key);
+			entry.checked = Checked.SOME;
+			entry.children = 0;
+			entry.all = 0;
+			entry.some = 0;
+
+			Iterator<? extends T> children = provider.getChildren(node);
+			while (children.hasNext())
+			{
+				entries.put(Keys.key(provider, children.next()), new Entry(Checked.ALL));
+
+				entry.children++;
+				entry.all++;
+			}
+
+			if (i > 0)
+			{
+				// split from checked to partially checked
+				Entry parent = entries.get(Keys.key(provider, path.get(i - 1)));
+				parent.all--;
+				parent.some++;
+			}
+
+			changed.put(key, node);
+		}
+	}
+
+	/**
+	 * Remove all entries below the given node.
+	 */
+	private void clear(T t, Entry entry)
+	{
+		if (entry.checked == Checked.SOME)
+		{
+			Iterator<? extends T> children = provider.getChildren(t);
+			while (children.hasNext())
+			{
+				T child = children.next();
+
+				Entry childEntry = entries.remove(Keys.key(provider, child));
+				if (childEntry != null)
+				{
+					clear(child, childEntry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Propagate the change of the given node's state to its ancestors.
+	 */
+	private void propagate(T t, Checked old, Checked checked, Map<Object, T> changed)
+	{
+		T parent = provider.getParent(t);
+		if (parent == null)
+		{
+			return;
+		}
+
+		Object key = Keys.key(provider, parent);
+		Entry entry = entries.get(key);
+		if (entry == null)
+		{
+			entry = new Entry(Checked.NONE);
+
+			Iterator<? extends T> children = provider.getChildren(parent);
+			while (children.hasNext())
+			{
+				children.next();
+				entry.children++;
+			}
+			entries.put(key, entry);
+		}
+		Checked parentOld = entry.checked;
+
+		entry.count(old, -1);
+		entry.count(checked, 1);
+
+		if (entry.all == entry.children)
+		{
+			entry.checked = Checked.ALL;
+
+			// checked subtree needs no entries below
+			Iterator<? extends T> children = provider.getChildren(parent);
+			while (children.hasNext())
+			{
+				entries.remove(Keys.key(provider, children.next()));
+			}
+		}
+		else if (entry.all + entry.some == 0)
+		{
+			entry.checked = Checked.NONE;
+
+			entries.remove(key);
+		}
+		else
+		{
+			entry.checked = Checked.SOME;
+		}
+
+		if (entry.checked != parentOld)
+		{
+			changed.put(key, parent);
+
+			propagate(parent, parentOld, entry.checked, changed);
+		}
+	}
+
+	/**
+	 * Checked state of a node.
+	 */
+	public static enum Checked {
+		/**
+		 * Node and all descendants are checked.
+		 */
+		ALL,
+		/**
+		 * Some descendants are checked.
+		 */
+		SOME,
+		/**
+		 * Node and all descendants are unchecked.
+		 */
+		NONE
+	}
+
+	/**
+	 * The entry of a node.
+	 */
+	private static class Entry implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private Checked checked;
+
+		/**
+		 * Count of children, kept for partially checked nodes only.
+		 */
+		private int children;
+
+		/**
+		 * Count of checked children.
+		 */
+		private int all;
+
+		/**
+		 * Count of partially checked children.
+		 */
+		private int some;
+
+		public Entry(Checked checked)
+		{
+			this.checked = checked;
+		}
+
+		public void count(Checked checked, int delta)
+		{
+			if (checked == Checked.ALL)
+			{
+				all += delta;
+			}
+			else if (checked == Checked.SOME)
+			{
+				some += delta;
+			}
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.model.IDetachable;
+
+import wickettree.IBatchTreeProvider;
+import wickettree.ITreeProvider;
+
+/**
+ * Children of expanded nodes, fetched level by level from an
+ * {@link IBatchTreeProvider} and held until detachment.
+ * 
+ * If the provider does not support batches, all children are fetched one by
+ * one from the provider.
+ * 
+ * @see #fetch(Iterator, int)
+ * @see #isExpanded(Object)
+ * 
+ * @author Sven Meier
+ */
+public abstract class ChildrenBatch<T> implements IDetachable
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private ITreeProvider<T> provider;
+
+	private transient Map<Object, List<T>> children;
+
+	/**
+	 * Fetch children from the given provider.
+	 * 
+	 * @param provider
+	 *            provider of children
+	 */
+	public ChildrenBatch(ITreeProvider<T> provider)
+	{
+		this.provider = provider;
+	}
+
+	/**
+	 * Fetch the children of the given nodes and their descendants, as far as
+	 * they are expanded.
+	 * 
+	 * @param nodes
+	 *            nodes to fetch children for
+	 * @param levels
+	 *            number of levels to fetch
+	 * @return iterator over the given nodes
+	 * @see #isExpanded(Object)
+	 */
+	public Iterator<? extends T> fetch(Iterator<? extends T> nodes, int levels)
+	{
+		if (!(provider instanceof IBatchTreeProvider<?>))
+		{
+			return nodes;
+		}
+
+		List<T> list = new ArrayList<T>();
+		while (nodes.hasNext())
+		{
+			list.add(nodes.next());
+		}
+
+		List<T> parents = expanded(list);
+		for (int level = 0; level < levels && !parents.isEmpty(); level++)
+		{
+			List<Iterator<? extends T>> iterators = ((IBatchTreeProvider<T>)provider)
+					.getChildren(parents);
+
+			List<T> expanded = new ArrayList<T>();
+			for (int p = 0; p < parents.size(); p++)
+			{
+				List<T> fetched = new ArrayList<T>();
+				Iterator<? extends T> iterator = iterators.get(p);
+				while (iterator.hasNext())
+				{
+					fetched.add(iterator.next());
+				}
+				put(parents.get(p), fetched);
+
+				expanded.addAll(expanded(fetched));
+			}
+			parents = expanded;
+		}
+
+		return list.iterator();
+	}
+
+	/**
+	 * Get the children of the given node, either fetched already or directly
+	 * from the provider.
+	 * 
+	 * @param t
+	 *            node to get children for
+	 * @return children
+	 */
+	public Iterator<? extends T> getChildren(T t)
+	{
+		if (children != null)
+		{
+			List<T> list = children.get(Keys.key(provider, t));
+
+			if (list != null)
+			{
+				return list.iterator();
+			}
+		}
+		return provider.getChildren(t);
+	}
+
+	/**
+	 * Hook method to decide whether the children of the given node should be
+	 * fetched.
+	 */
+	protected abstract boolean isExpanded(T t);
+
+	/**
+	 * Forget all fetched children.
+	 */
+	public void detach()
+	{
+		children = null;
+	}
+
+	private List<T> expanded(List<T> nodes)
+	{
+		List<T> expanded = new ArrayList<T>();
+		for (T node : nodes)
+		{
+			if (isExpanded(node) && !isFetched(node))
+			{
+				expanded.add(node);
+			}
+		}
+		return expanded;
+	}
+
+	private boolean isFetched(T t)
+	{
+		if (children == null)
+		{
+			return false;
+		}
+
+		return children.containsKey(Keys.key(provider, t));
+	}
+
+	private void put(T t, List<T> list)
+	{
+		if (children == null)
+		{
+			children = new HashMap<Object, List<T>>();
+		}
+
+		children.put(Keys.key(provider, t), list);
+	}
+}
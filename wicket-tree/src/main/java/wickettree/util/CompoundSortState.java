@@ -0,0 +1,182 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.ISortState;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SingleSortState;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+
+/**
+ * A sort state of several properties, e.g. sorting by type then by name.
+ * 
+ * In contrast to {@link SingleSortState} changing the sort order of a property
+ * keeps the other properties: The changed property becomes the primary sort
+ * key, previous properties follow as secondary keys up to a maximum count of
+ * keys.
+ * 
+ * @see #getSorts()
+ * 
+ * @author Sven Meier
+ */
+public class CompoundSortState implements ISortState
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private int maxSorts;
+
+	private List<SortParam> sorts = new ArrayList<SortParam>();
+
+	/**
+	 * Sort by at most 3 properties.
+	 */
+	public CompoundSortState()
+	{
+		this(3);
+	}
+
+	/**
+	 * Sort by at most the given count of properties.
+	 * 
+	 * @param maxSorts
+	 *            maximum count of sort properties
+	 */
+	public CompoundSortState(int maxSorts)
+	{
+		if (maxSorts < 1)
+		{
+			throw new IllegalArgumentException("argument [maxSorts] must be positive");
+		}
+		this.maxSorts = maxSorts;
+	}
+
+	public void setPropertySortOrder(String property, SortOrder order)
+	{
+		if (property == null)
+		{
+			throw new IllegalArgumentException("argument [property] cannot be null");
+		}
+		if (order == null)
+		{
+			throw new IllegalArgumentException("argument [order] cannot be null");
+		}
+
+		remove(property);
+
+		if (order != SortOrder.NONE)
+		{
+			sorts.add(0, new SortParam(property, order == SortOrder.ASCENDING));
+
+			while (sorts.size() > maxSorts)
+			{
+				sorts.remove(sorts.size() - 1);
+			}
+		}
+	}
+
+	private void remove(String property)
+	{
+		Iterator<SortParam> iterator = sorts.iterator();
+		while (iterator.hasNext())
+		{
+			if (iterator.next().getProperty().equals(property))
+			{
+				iterator.remove();
+			}
+		}
+	}
+
+	public SortOrder getPropertySortOrder(String property)
+	{
+		if (property == null)
+		{
+			throw new IllegalArgumentException("argument [property] cannot be null");
+		}
+
+		for (SortParam sort : sorts)
+		{
+			if (sort.getProperty().equals(property))
+			{
+				return sort.isAscending() ? SortOrder.ASCENDING : SortOrder.DESCENDING;
+			}
+		}
+		return SortOrder.NONE;
+	}
+
+	/**
+	 * Get the rank of the given property in the sort params.
+	 * 
+	 * @param property
+	 *            sort property
+	 * @return <code>0</code> for the primary property, <code>-1</code> if not
+	 *         sorted
+	 */
+	public int getRank(String property)
+	{
+		for (int i = 0; i < sorts.size(); i++)
+		{
+			if (sorts.get(i).getProperty().equals(property))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the sort params, the primary param first.
+	 * 
+	 * @return sort params
+	 */
+	public List<SortParam> getSorts()
+	{
+		return Collections.unmodifiableList(sorts);
+	}
+
+	/**
+	 * Set the sort params.
+	 * 
+	 * @param sorts
+	 *            sort params, the primary param first
+	 */
+	public void setSorts(List<SortParam> sorts)
+	{
+		// copy first, the given list might be a view of the current sorts
+		List<SortParam> copy = new ArrayList<SortParam>(sorts);
+
+		this.sorts.clear();
+
+		for (int i = copy.size() - 1; i >= 0; i--)
+		{
+			SortParam sort = copy.get(i);
+
+			setPropertySortOrder(sort.getProperty(), sort.isAscending() ? SortOrder.ASCENDING
+					: SortOrder.DESCENDING);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[CompoundSortState sorts=" + sorts + "]";
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.IInitializer;
+
+/**
+ * Initializer of this library, registered in <code>wicket.properties</code>.
+ * Shuts down the executors shared by all {@link AsynchronousTreeProvider}s and
+ * {@link PrefetchingTreeProvider}s when the application is destroyed.
+ * 
+ * @author Sven Meier
+ */
+public class Initializer implements IInitializer
+{
+
+	public void init(Application application)
+	{
+	}
+
+	public void destroy(Application application)
+	{
+		SharedExecutors.shutdown();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "wicket-tree initializer";
+	}
+}
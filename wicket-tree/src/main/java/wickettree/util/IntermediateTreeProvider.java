@@ -15,37 +15,95 @@
  */
 package wickettree.util;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.Component;
+import org.apache.wicket.Page;
 import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.WicketAjaxReference;
+import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.markup.html.WicketEventReference;
 import org.apache.wicket.model.IComponentAssignedModel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.IWrapModel;
+import org.apache.wicket.request.IRequestParameters;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.time.Duration;
-
+import wickettree.AbstractTree;
 import wickettree.ITreeProvider;
-import wickettree.nested.BranchItem;
+import wickettree.Node;
 
 /**
  * Wrapper of a ITreeProvider handling intermediate childrens.
  * 
+ * Branches with intermediate children are updated with a single long poll
+ * per page: If intermediate children are marked with a token, the poll
+ * completes as soon as the token is completed on the {@link Notifier}, other
+ * branches are updated after the configured delay, backing off while they
+ * stay intermediate. All branches ready at once are updated in a single
+ * request.
+ * 
+ * Note that each waiting poll holds a thread of the servlet container for up
+ * to the poll timeout, i.e. one thread per page with pending tokens. Lower the
+ * timeout if threads are scarce, at the cost of more requests.
+ * 
+ * @see #setPollTimeout(Duration)
  * @see #getChildren(Object)
  * @see #intermediate(Iterator)
+ * @see #intermediate(Iterator, String)
  */
 public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 {
 
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Milliseconds a poll waits at most.
+	 */
+	private static final long MAX_TIMEOUT = 30 * 1000;
+
+	private Duration pollTimeout = Duration.milliseconds(MAX_TIMEOUT);
+
+	private static final ResourceReference JS = new JavaScriptResourceReference(
+			IntermediateTreeProvider.class, "intermediate.js");
+
+	private static final ResourceReference POLL = new ResourceReference(
+			IntermediateTreeProvider.class, "poll")
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public IResource getResource()
+		{
+			return new PollResource();
+		}
+	};
+
 	private ITreeProvider<T> provider;
 
 	private Duration delay;
 
 	/**
-	 * All nodes with intermediate children.
+	 * Tokens of all nodes with intermediate children, <code>null</code> if
+	 * not marked with a token. Serialized in its default form, since it holds
+	 * only the few nodes with children still pending.
 	 */
-	private ProviderSubset<T> intermediates;
+	private Map<IModel<T>, String> intermediates = new HashMap<IModel<T>, String>();
 
 	/**
 	 * Wrap the given provider.
@@ -53,15 +111,41 @@ public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 	 * @param provider
 	 *            provider to wrap
 	 * @param delay
-	 *            delay after which to update branches for nodes with
-	 *            intermediate children
+	 *            initial delay after which to update branches for nodes with
+	 *            intermediate children not marked with a token
 	 */
 	public IntermediateTreeProvider(ITreeProvider<T> provider, Duration delay)
 	{
 		this.provider = provider;
 		this.delay = delay;
+	}
+
+	/**
+	 * Set the time a poll for tokens waits for completion at most.
+	 * 
+	 * @param pollTimeout
+	 *            timeout, 30 seconds at most and by default
+	 * @return this
+	 */
+	public IntermediateTreeProvider<T> setPollTimeout(Duration pollTimeout)
+	{
+		if (pollTimeout.getMilliseconds() > MAX_TIMEOUT)
+		{
+			throw new IllegalArgumentException("argument [pollTimeout] exceeds 30 seconds");
+		}
+		this.pollTimeout = pollTimeout;
 
-		intermediates = new ProviderSubset<T>(provider);
+		return this;
+	}
+
+	/**
+	 * Get the time a poll for tokens waits for completion at most.
+	 * 
+	 * @return timeout
+	 */
+	public Duration getPollTimeout()
+	{
+		return pollTimeout;
 	}
 
 	/**
@@ -69,7 +153,15 @@ public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 	 */
 	public boolean hasIntermediateChildren(T t)
 	{
-		return intermediates.contains(t);
+		IModel<T> model = provider.model(t);
+		try
+		{
+			return intermediates.containsKey(model);
+		}
+		finally
+		{
+			model.detach();
+		}
 	}
 
 	public Iterator<? extends T> getRoots()
@@ -92,14 +184,16 @@ public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 	{
 		Iterator<? extends T> iterator = provider.getChildren(t);
 
+		IModel<T> model = provider.model(t);
 		if (iterator instanceof IntermediateIterator<?>)
 		{
-			intermediates.add(t);
+			intermediates.put(model, ((IntermediateIterator<?>)iterator).token);
 		}
 		else
 		{
-			intermediates.remove(t);
+			intermediates.remove(model);
 		}
+		model.detach();
 
 		return iterator;
 	}
@@ -113,11 +207,99 @@ public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 	{
 		provider.detach();
 
-		intermediates.detach();
+		for (IModel<T> model : intermediates.keySet())
+		{
+			model.detach();
+		}
+	}
+
+	/**
+	 * Register this provider and the given tree on the single behavior to
+	 * update branches of the given page, shared by all providers on that page.
+	 * The behavior is added once when the first node of the page is
+	 * configured.
+	 */
+	private void register(Page page, AbstractTree<?> tree)
+	{
+		UpdateBehavior behavior = getUpdateBehavior(page);
+		if (behavior == null)
+		{
+			behavior = new UpdateBehavior();
+			page.add(behavior);
+		}
+
+		behavior.register(this, tree);
+	}
+
+	/**
+	 * Get the behavior to update branches of the given page.
+	 * 
+	 * @return behavior or <code>null</code> if not added yet
+	 */
+	private static UpdateBehavior getUpdateBehavior(Page page)
+	{
+		List<UpdateBehavior> behaviors = page.getBehaviors(UpdateBehavior.class);
+		if (behaviors.isEmpty())
+		{
+			return null;
+		}
+		return behaviors.get(0);
+	}
+
+	/**
+	 * Update all branches with intermediate children which are completed, in
+	 * the given trees using this provider.
+	 */
+	private void update(List<AbstractTree<?>> trees, Set<String> completed, boolean timeout,
+			AjaxRequestTarget target)
+	{
+		List<IModel<T>> updates = new ArrayList<IModel<T>>();
+
+		Iterator<Map.Entry<IModel<T>, String>> entries = intermediates.entrySet().iterator();
+		while (entries.hasNext())
+		{
+			Map.Entry<IModel<T>, String> entry = entries.next();
+
+			String token = entry.getValue();
+			if (token == null ? timeout : completed.contains(token))
+			{
+				updates.add(entry.getKey());
+
+				entries.remove();
+			}
+		}
+
+		for (IModel<T> model : updates)
+		{
+			T t = model.getObject();
+			if (t != null)
+			{
+				for (AbstractTree<?> tree : trees)
+				{
+					updateBranch(tree, t, target);
+				}
+			}
+			model.detach();
+		}
 	}
 
 	/**
-	 * A wrapper which adds an Ajax behavior on {@link BranchItem}s.
+	 * Update the branch of the given node, if it is currently rendered in the
+	 * given tree.
+	 */
+	@SuppressWarnings("unchecked")
+	private void updateBranch(AbstractTree<?> tree, T t, AjaxRequestTarget target)
+	{
+		AbstractTree<T> typed = (AbstractTree<T>)tree;
+		if (typed.findComponent(Node.class, t) != null)
+		{
+			typed.updateBranch(t, target);
+		}
+	}
+
+	/**
+	 * A wrapper which adds a behavior on {@link Node}s, for both
+	 * {@link wickettree.NestedTree} and {@link wickettree.TableTree}.
 	 */
 	private class BehaviorWrapper implements IComponentAssignedModel<T>, IWrapModel<T>
 	{
@@ -164,36 +346,46 @@ public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 
 		public IWrapModel<T> wrapOnAssignment(final Component component)
 		{
-			if (component instanceof BranchItem<?>)
+			if (component instanceof Node<?>)
 			{
-				component.add(new AbstractDefaultAjaxBehavior()
+				component.add(new Behavior()
 				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public void onConfigure(Component component)
+					{
+						super.onConfigure(component);
+
+						register(component.getPage(), ((Node<?>)component).getTree());
+					}
+
 					@Override
 					public void renderHead(Component component, IHeaderResponse response)
 					{
 						super.renderHead(component, response);
 
-						T t = model.getObject();
-						if (hasIntermediateChildren(t))
+						if (!intermediates.containsKey(model))
 						{
-							response.renderOnLoadJavaScript(getJsTimeoutCall());
+							return;
 						}
-					}
+						String token = intermediates.get(model);
 
-					protected final String getJsTimeoutCall()
-					{
-						return "setTimeout(\"" + getCallbackScript() + "\", "
-								+ delay.getMilliseconds() + ");";
-					}
+						Application.get().getResourceReferenceRegistry().registerResourceReference(
+								POLL);
 
-					@Override
-					protected void respond(AjaxRequestTarget target)
-					{
-						T t = model.getObject();
+						response.renderJavaScriptReference(WicketEventReference.INSTANCE);
+						response.renderJavaScriptReference(WicketAjaxReference.INSTANCE);
+						response.renderJavaScriptReference(JS);
 
-						intermediates.remove(t);
+						CharSequence pollUrl = RequestCycle.get().urlFor(POLL, null);
+						CharSequence updateUrl = getUpdateBehavior(component.getPage())
+								.getCallbackUrl();
 
-						target.add(component);
+						response.renderOnDomReadyJavaScript("WicketTree.Intermediate.pending('" +
+							pollUrl + "', '" + updateUrl + "', " +
+							(token == null ? "null" : "'" + token + "'") + ", " +
+							delay.getMilliseconds() + ", " + pollTimeout.getMilliseconds() + ");");
 					}
 				});
 			}
@@ -207,6 +399,117 @@ public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 		}
 	}
 
+	/**
+	 * Behavior of a page to update branches of completed intermediate
+	 * children - all completed branches of all providers are updated in a
+	 * single request.
+	 */
+	private static class UpdateBehavior extends AbstractDefaultAjaxBehavior
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Trees by providers.
+		 */
+		private Map<IntermediateTreeProvider<?>, List<AbstractTree<?>>> providers =
+				new IdentityHashMap<IntermediateTreeProvider<?>, List<AbstractTree<?>>>();
+
+		public void register(IntermediateTreeProvider<?> provider, AbstractTree<?> tree)
+		{
+			List<AbstractTree<?>> trees = providers.get(provider);
+			if (trees == null)
+			{
+				trees = new ArrayList<AbstractTree<?>>();
+				providers.put(provider, trees);
+			}
+
+			for (AbstractTree<?> other : trees)
+			{
+				if (other == tree)
+				{
+					return;
+				}
+			}
+			trees.add(tree);
+		}
+
+		@Override
+		protected void respond(AjaxRequestTarget target)
+		{
+			IRequestParameters parameters = getComponent().getRequest().getRequestParameters();
+
+			Set<String> completed = tokens(parameters);
+			boolean timeout = parameters.getParameterValue("timeout").toBoolean(false);
+
+			for (Map.Entry<IntermediateTreeProvider<?>, List<AbstractTree<?>>> entry : providers
+					.entrySet())
+			{
+				entry.getKey().update(entry.getValue(), completed, timeout, target);
+			}
+
+			// completed tokens are consumed
+			Notifier.forget(completed);
+		}
+	}
+
+	/**
+	 * A resource waiting for completion of any of the requested tokens -
+	 * without locking any page.
+	 */
+	private static class PollResource extends AbstractResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected ResourceResponse newResourceResponse(Attributes attributes)
+		{
+			IRequestParameters parameters = attributes.getRequest().getRequestParameters();
+
+			long timeout = Math.min(parameters.getParameterValue("timeout").toLong(0),
+					MAX_TIMEOUT);
+
+			List<String> completed;
+			try
+			{
+				completed = Notifier.await(tokens(parameters), timeout);
+			}
+			catch (InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+
+				completed = new ArrayList<String>();
+			}
+			final String tokens = Strings.join(",", completed);
+
+			ResourceResponse response = new ResourceResponse();
+			response.setContentType("text/plain");
+			response.disableCaching();
+			response.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(Attributes attributes)
+				{
+					attributes.getResponse().write(tokens);
+				}
+			});
+			return response;
+		}
+	}
+
+	private static Set<String> tokens(IRequestParameters parameters)
+	{
+		Set<String> tokens = new HashSet<String>();
+		for (String token : Strings.split(parameters.getParameterValue("tokens").toString(""),
+				','))
+		{
+			if (token.length() > 0)
+			{
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+
 	/**
 	 * Mark children as intermediate. Call this method from your
 	 * {@link ITreeProvider#getChildren(Object)} implementation as needed.
@@ -217,16 +520,34 @@ public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 	 */
 	public static <S> Iterator<S> intermediate(Iterator<S> children)
 	{
-		return new IntermediateIterator<S>(children);
+		return new IntermediateIterator<S>(children, null);
+	}
+
+	/**
+	 * Mark children as intermediate until the given token is completed.
+	 * 
+	 * @param children
+	 *            intermediate children
+	 * @param token
+	 *            token to be completed on the {@link Notifier}
+	 * @see ITreeProvider#getChildren(Object)
+	 * @see Notifier#complete(String)
+	 */
+	public static <S> Iterator<S> intermediate(Iterator<S> children, String token)
+	{
+		return new IntermediateIterator<S>(children, token);
 	}
 
 	private static class IntermediateIterator<S> implements Iterator<S>
 	{
 		private Iterator<S> iterator;
 
-		public IntermediateIterator(Iterator<S> iterator)
+		private String token;
+
+		public IntermediateIterator(Iterator<S> iterator, String token)
 		{
 			this.iterator = iterator;
+			this.token = token;
 		}
 
 		public boolean hasNext()
@@ -244,4 +565,4 @@ public class IntermediateTreeProvider<T> implements ITreeProvider<T>
 			iterator.remove();
 		}
 	}
-}
\ No newline at end of file
+}
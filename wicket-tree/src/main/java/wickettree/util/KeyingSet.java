@@ -15,6 +15,9 @@
  */
 package wickettree.util;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashSet;
@@ -27,16 +30,21 @@ import org.apache.wicket.model.IModel;
 /**
  * A set holding objects by their keys.
  * 
+ * Serializes to its keys only, numbers and strings taking a few bytes each.
+ * 
  * Note: Apart from {@link #contains(Object)} no query methods are supported.
  * 
  * @see #key(Object)
+ * @see Varints#writeKey(java.io.ObjectOutput, Object)
  * 
  * @author Sven Meier
  */
 public abstract class KeyingSet<T> implements Set<T>, Serializable
 {
 
-	private Set<Object> keys = new HashSet<Object>();
+	private static final long serialVersionUID = 1L;
+
+	private transient Set<Object> keys = new HashSet<Object>();
 
 	/**
 	 * Get the key for the given object.
@@ -144,6 +152,37 @@ public abstract class KeyingSet<T> implements Set<T>, Serializable
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Get the contained keys.
+	 */
+	Set<Object> getKeys()
+	{
+		return keys;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+
+		Varints.writeLong(out, keys.size());
+		for (Object key : keys)
+		{
+			Varints.writeKey(out, key);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		int size = (int)Varints.readLong(in);
+		keys = new HashSet<Object>(size * 2);
+		for (int k = 0; k < size; k++)
+		{
+			keys.add(Varints.readKey(in));
+		}
+	}
+
 	/**
 	 * Create a model holding this set.
 	 * 
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import org.apache.wicket.model.IModel;
+
+import wickettree.IKeyingTreeProvider;
+import wickettree.ITreeProvider;
+
+/**
+ * Utility methods for keys identifying nodes in maps and sets.
+ * 
+ * If the provider is a {@link IKeyingTreeProvider} its keys are used, a
+ * detached model of the node otherwise.
+ * 
+ * @see IKeyingTreeProvider#key(Object)
+ * @see ITreeProvider#model(Object)
+ * 
+ * @author Sven Meier
+ */
+public final class Keys
+{
+
+	private Keys()
+	{
+	}
+
+	/**
+	 * Get the key of the given node.
+	 * 
+	 * @param provider
+	 *            provider of the node
+	 * @param t
+	 *            node
+	 * @return key
+	 */
+	public static <T> Object key(ITreeProvider<T> provider, T t)
+	{
+		if (provider instanceof IKeyingTreeProvider<?>)
+		{
+			return ((IKeyingTreeProvider<T>)provider).key(t);
+		}
+
+		IModel<T> model = provider.model(t);
+		// key is needed for equality only
+		model.detach();
+		return model;
+	}
+
+	/**
+	 * Get the key of the given node, whose model was created already.
+	 * 
+	 * @param provider
+	 *            provider of the node
+	 * @param t
+	 *            node
+	 * @param model
+	 *            detached model of the node
+	 * @return key
+	 */
+	public static <T> Object key(ITreeProvider<T> provider, T t, IModel<T> model)
+	{
+		if (provider instanceof IKeyingTreeProvider<?>)
+		{
+			return ((IKeyingTreeProvider<T>)provider).key(t);
+		}
+		return model;
+	}
+}
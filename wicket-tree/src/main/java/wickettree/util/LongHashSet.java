@@ -0,0 +1,236 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * A set of primitive longs, using open addressing with linear probing.
+ * 
+ * Serializes to its keys only, i.e. about 8 bytes per key.
+ * 
+ * @author Sven Meier
+ */
+class LongHashSet implements Serializable
+{
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Marker of free slots.
+	 */
+	private static final long FREE = 0;
+
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * Slots with a power of 2 length.
+	 */
+	private transient long[] slots;
+
+	/**
+	 * Number of occupied slots.
+	 */
+	private transient int occupied;
+
+	/**
+	 * Is {@link #FREE} contained - it cannot be held in a slot.
+	 */
+	private transient boolean free;
+
+	public LongHashSet()
+	{
+		slots = new long[MIN_CAPACITY];
+	}
+
+	public int size()
+	{
+		return occupied + (free ? 1 : 0);
+	}
+
+	public boolean contains(long key)
+	{
+		if (key == FREE)
+		{
+			return free;
+		}
+
+		int mask = slots.length - 1;
+		int slot = hash(key) & mask;
+		while (slots[slot] != FREE)
+		{
+			if (slots[slot] == key)
+			{
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public boolean add(long key)
+	{
+		if (key == FREE)
+		{
+			boolean changed = !free;
+			free = true;
+			return changed;
+		}
+
+		int mask = slots.length - 1;
+		int slot = hash(key) & mask;
+		while (slots[slot] != FREE)
+		{
+			if (slots[slot] == key)
+			{
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = key;
+		occupied++;
+
+		// keep load factor below 1/2
+		if (occupied * 2 > slots.length)
+		{
+			resize(slots.length * 2);
+		}
+		return true;
+	}
+
+	public boolean remove(long key)
+	{
+		if (key == FREE)
+		{
+			boolean changed = free;
+			free = false;
+			return changed;
+		}
+
+		int mask = slots.length - 1;
+		int slot = hash(key) & mask;
+		while (slots[slot] != FREE)
+		{
+			if (slots[slot] == key)
+			{
+				slots[slot] = FREE;
+				occupied--;
+
+				shift(slot);
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public void clear()
+	{
+		slots = new long[MIN_CAPACITY];
+		occupied = 0;
+		free = false;
+	}
+
+	/**
+	 * Shift following keys back into the given free slot, so no probe sequence
+	 * is interrupted.
+	 */
+	private void shift(int gap)
+	{
+		int mask = slots.length - 1;
+
+		int slot = (gap + 1) & mask;
+		while (slots[slot] != FREE)
+		{
+			int home = hash(slots[slot]) & mask;
+
+			// move if home is not cyclically in (gap, slot]
+			if (((slot - home) & mask) >= ((slot - gap) & mask))
+			{
+				slots[gap] = slots[slot];
+				slots[slot] = FREE;
+				gap = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void resize(int capacity)
+	{
+		long[] old = slots;
+
+		slots = new long[capacity];
+		int mask = capacity - 1;
+		for (long key : old)
+		{
+			if (key != FREE)
+			{
+				int slot = hash(key) & mask;
+				while (slots[slot] != FREE)
+				{
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = key;
+			}
+		}
+	}
+
+	private static int hash(long key)
+	{
+		key *= 0x9E3779B97F4A7C15L;
+		return (int)(key ^ (key >>> 32));
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+
+		out.writeInt(size());
+		if (free)
+		{
+			out.writeLong(FREE);
+		}
+		for (long key : slots)
+		{
+			if (key != FREE)
+			{
+				out.writeLong(key);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		int size = in.readInt();
+
+		int capacity = MIN_CAPACITY;
+		while (capacity < size * 2 + 1)
+		{
+			capacity *= 2;
+		}
+		slots = new long[capacity];
+
+		for (int k = 0; k < size; k++)
+		{
+			add(in.readLong());
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.IModel;
+
+/**
+ * A set holding objects by primitive long keys, e.g. numeric ids of persistent
+ * entities.
+ * 
+ * Keys are held without boxing and serialized with about 8 bytes each, thus
+ * this set is well suited to keep the state of large trees in the page store.
+ * 
+ * Note: Apart from {@link #contains(Object)} no query methods are supported.
+ * 
+ * @see #key(Object)
+ * @see KeyingSet
+ * 
+ * @author Sven Meier
+ */
+public abstract class LongKeyingSet<T> implements Set<T>, Serializable
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private LongHashSet keys = new LongHashSet();
+
+	/**
+	 * Get the key for the given object.
+	 * 
+	 * @param t
+	 *            object to get key for
+	 */
+	protected abstract long key(T t);
+
+	public int size()
+	{
+		return keys.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return keys.size() == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean contains(Object o)
+	{
+		if (o == null)
+		{
+			return false;
+		}
+		else
+		{
+			return keys.contains(key((T)o));
+		}
+	}
+
+	public boolean add(T t)
+	{
+		return keys.add(key(t));
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object t)
+	{
+		if (t == null)
+		{
+			return false;
+		}
+		else
+		{
+			return keys.remove(key((T)t));
+		}
+	}
+
+	public boolean containsAll(Collection<?> cs)
+	{
+		for (Object c : cs)
+		{
+			if (!contains(c))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean addAll(Collection<? extends T> cs)
+	{
+		boolean changed = false;
+
+		for (Object c : cs)
+		{
+			changed |= add((T)c);
+		}
+
+		return changed;
+	}
+
+	public boolean removeAll(Collection<?> cs)
+	{
+		boolean changed = false;
+
+		for (Object c : cs)
+		{
+			changed |= remove(c);
+		}
+
+		return changed;
+	}
+
+	public void clear()
+	{
+		keys.clear();
+	}
+
+	public Iterator<T> iterator()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public Object[] toArray()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public <S> S[] toArray(S[] ts)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean retainAll(Collection<?> c)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Create a model holding this set.
+	 * 
+	 * @return model
+	 */
+	public IModel<Set<T>> createModel()
+	{
+		return new AbstractReadOnlyModel<Set<T>>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Set<T> getObject()
+			{
+				return LongKeyingSet.this;
+			}
+		};
+	}
+}
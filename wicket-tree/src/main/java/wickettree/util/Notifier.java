@@ -0,0 +1,158 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A notifier of completed tasks inside the local JVM, identifying tasks by
+ * tokens.
+ * 
+ * Completions are remembered until they are forgotten or for a limited time
+ * only, so tokens have to be awaited in time.
+ * 
+ * @see #newToken()
+ * @see #complete(String)
+ * @see #await(Collection, long)
+ * @see #forget(Collection)
+ * 
+ * @author Sven Meier
+ */
+public final class Notifier
+{
+
+	/**
+	 * Milliseconds to remember completions.
+	 */
+	private static final long EXPIRATION = 5 * 60 * 1000;
+
+	private static long tokens;
+
+	/**
+	 * Times of completion by tokens.
+	 */
+	private static final Map<String, Long> completed = new HashMap<String, Long>();
+
+	private Notifier()
+	{
+	}
+
+	/**
+	 * Create a new token to identify a task.
+	 * 
+	 * @return token
+	 */
+	public static synchronized String newToken()
+	{
+		return Long.toString(++tokens, Character.MAX_RADIX);
+	}
+
+	/**
+	 * Notify the completion of the task with the given token.
+	 * 
+	 * @param token
+	 *            token of task
+	 */
+	public static void complete(String token)
+	{
+		synchronized (completed)
+		{
+			long now = System.currentTimeMillis();
+
+			expire(now);
+
+			completed.put(token, now);
+
+			completed.notifyAll();
+		}
+	}
+
+	/**
+	 * Forget the completion of the given tokens, as soon as they are no longer
+	 * awaited.
+	 * 
+	 * @param tokens
+	 *            tokens of tasks
+	 */
+	public static void forget(Collection<String> tokens)
+	{
+		synchronized (completed)
+		{
+			for (String token : tokens)
+			{
+				completed.remove(token);
+			}
+
+			expire(System.currentTimeMillis());
+		}
+	}
+
+	private static void expire(long now)
+	{
+		Iterator<Long> times = completed.values().iterator();
+		while (times.hasNext())
+		{
+			if (times.next() < now - EXPIRATION)
+			{
+				times.remove();
+			}
+		}
+	}
+
+	/**
+	 * Wait until at least one of the given tokens is completed.
+	 * 
+	 * @param tokens
+	 *            tokens to wait for
+	 * @param timeout
+	 *            milliseconds to wait at most
+	 * @return completed tokens, empty if none completed before timeout
+	 * @throws InterruptedException
+	 */
+	public static List<String> await(Collection<String> tokens, long timeout)
+			throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + timeout;
+
+		synchronized (completed)
+		{
+			while (true)
+			{
+				List<String> done = new ArrayList<String>();
+				for (String token : tokens)
+				{
+					if (completed.containsKey(token))
+					{
+						done.add(token);
+					}
+				}
+
+				long remaining = end - System.currentTimeMillis();
+				if (!done.isEmpty() || remaining <= 0)
+				{
+					return done;
+				}
+
+				completed.wait(remaining);
+			}
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.crypt.Base64;
+
+import wickettree.StatelessNode;
+
+/**
+ * A set holding the expansion state of a tree in a page parameter, so the
+ * state is kept by the client and a tree can be rendered statelessly.
+ * 
+ * The keys of all expanded nodes are sorted and front coded, i.e. each key
+ * is written as the length of the prefix shared with its predecessor followed
+ * by the remaining characters in UTF-8. The result is encoded in a URL safe token,
+ * which for hierarchical keys grows by a few bytes per expanded node only.
+ * 
+ * A malformed token is ignored, i.e. all nodes are collapsed.
+ * 
+ * @see StatelessNode
+ * @see #read(PageParameters)
+ * @see #toggle(Object, PageParameters)
+ * 
+ * @author Sven Meier
+ */
+public abstract class ParameterState<T> extends KeyingSet<T>
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String UTF_8 = "UTF-8";
+
+	private final String parameter;
+
+	/**
+	 * Create an empty state.
+	 * 
+	 * @param parameter
+	 *            name of the page parameter holding the state
+	 */
+	public ParameterState(String parameter)
+	{
+		if (parameter == null)
+		{
+			throw new IllegalArgumentException("argument [parameter] cannot be null");
+		}
+		this.parameter = parameter;
+	}
+
+	/**
+	 * Get the key for the given object.
+	 * 
+	 * @param t
+	 *            object to get key for
+	 */
+	@Override
+	protected abstract String key(T t);
+
+	/**
+	 * Get the name of the page parameter holding the state.
+	 * 
+	 * @return name of parameter
+	 */
+	public String getParameter()
+	{
+		return parameter;
+	}
+
+	/**
+	 * Read the state from the given parameters.
+	 * 
+	 * @param parameters
+	 *            parameters of a page, may be <code>null</code>
+	 * @return this
+	 */
+	public ParameterState<T> read(PageParameters parameters)
+	{
+		clear();
+
+		if (parameters != null)
+		{
+			String token = parameters.get(parameter).toOptionalString();
+			if (token != null)
+			{
+				getKeys().addAll(decode(token));
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Get parameters holding this state with the given node toggled, leaving
+	 * this state unchanged.
+	 * 
+	 * @param t
+	 *            node to expand or collapse
+	 * @param parameters
+	 *            parameters of a page, may be <code>null</code>
+	 * @return copy of parameters with the toggled state
+	 */
+	public PageParameters toggle(T t, PageParameters parameters)
+	{
+		SortedSet<String> keys = new TreeSet<String>();
+		for (Object key : getKeys())
+		{
+			keys.add((String)key);
+		}
+
+		String key = key(t);
+		if (!keys.remove(key))
+		{
+			keys.add(key);
+		}
+
+		PageParameters toggled;
+		if (parameters == null)
+		{
+			toggled = new PageParameters();
+		}
+		else
+		{
+			toggled = new PageParameters(parameters);
+		}
+
+		if (keys.isEmpty())
+		{
+			toggled.remove(parameter);
+		}
+		else
+		{
+			toggled.set(parameter, encode(keys));
+		}
+
+		return toggled;
+	}
+
+	/**
+	 * Encode the given keys into a token.
+	 * 
+	 * @param keys
+	 *            sorted keys
+	 * @return token
+	 */
+	static String encode(SortedSet<String> keys)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+
+			String previous = "";
+			for (String key : keys)
+			{
+				int prefix = 0;
+				int max = Math.min(previous.length(), key.length());
+				while (prefix < max && previous.charAt(prefix) == key.charAt(prefix))
+				{
+					prefix++;
+				}
+
+				if (prefix > 0 && Character.isHighSurrogate(key.charAt(prefix - 1)))
+				{
+					// keep surrogate pairs together
+					prefix--;
+				}
+
+				byte[] suffix = key.substring(prefix).getBytes(UTF_8);
+				Varints.writeLong(out, prefix);
+				Varints.writeLong(out, suffix.length);
+				out.write(suffix);
+
+				previous = key;
+			}
+			out.close();
+
+			return Base64.encodeBase64URLSafeString(bytes.toByteArray());
+		}
+		catch (IOException ex)
+		{
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Decode keys from the given token.
+	 * 
+	 * @param token
+	 *            token
+	 * @return keys or an empty collection if the token is malformed
+	 */
+	static Collection<String> decode(String token)
+	{
+		List<String> keys = new ArrayList<String>();
+
+		try
+		{
+			byte[] bytes = Base64.decodeBase64(token);
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+			String previous = "";
+			while (in.available() > 0)
+			{
+				int prefix = (int)Varints.readLong(in);
+				int length = (int)Varints.readLong(in);
+				if (prefix < 0 || prefix > previous.length() || length < 0 ||
+					length > in.available())
+				{
+					return new ArrayList<String>();
+				}
+
+				byte[] suffix = new byte[length];
+				in.readFully(suffix);
+
+				previous = previous.substring(0, prefix) + new String(suffix, UTF_8);
+				keys.add(previous);
+			}
+		}
+		catch (IOException ex)
+		{
+			return new ArrayList<String>();
+		}
+
+		return keys;
+	}
+}
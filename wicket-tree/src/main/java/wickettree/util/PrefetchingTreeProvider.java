@@ -0,0 +1,471 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.model.IModel;
+
+import wickettree.AbstractTree;
+import wickettree.IPrefetchingTreeProvider;
+import wickettree.ITreeProvider;
+
+/**
+ * Wrapper of a ITreeProvider prefetching the descendants of expanded nodes
+ * asynchronously, so a following expansion of one of the children is served
+ * from memory.
+ * 
+ * The children of an expanded node are loaded when requested, then the
+ * descendants of these children are prefetched up to the configured depth.
+ * Children which were expanded most frequently recently are prefetched first,
+ * at most the configured breadth of children for each node.
+ * 
+ * Prefetched children are kept as detached models in a bounded cache until
+ * they are requested or {@link #reset()}, so no nodes are held across
+ * requests: The models are resolved on the request thread, thus the children
+ * themselves are fresh, although the list of children might be stale. A
+ * request never waits for prefetching still in progress, instead it is
+ * cancelled and the children are loaded directly. Prefetching is kept as long
+ * as the page is not serialized.
+ * 
+ * Note that {@link ITreeProvider#getChildren(Object)},
+ * {@link ITreeProvider#hasChildren(Object)} and
+ * {@link ITreeProvider#model(Object)} of the prefetching provider are called
+ * on pool threads outside of any request. If no separate prefetching provider
+ * is given, the wrapped provider is used for prefetching and has to be
+ * thread-safe, since it is used by the request thread at the same time.
+ * 
+ * @see AbstractTree#expand(Object)
+ * @see #getExecutor()
+ * @see #PrefetchingTreeProvider(ITreeProvider, ITreeProvider, int, int)
+ * 
+ * @author Sven Meier
+ */
+public class PrefetchingTreeProvider<T> implements IPrefetchingTreeProvider<T>
+{
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Maximum count of cached children.
+	 */
+	private static final int MAX_CACHED = 1000;
+
+	/**
+	 * Maximum count of remembered expansions.
+	 */
+	private static final int MAX_FREQUENCIES = 100;
+
+	private ITreeProvider<T> provider;
+
+	private ITreeProvider<T> loader;
+
+	private int depth;
+
+	private int breadth;
+
+	/**
+	 * Frequencies of recent expansions by node models.
+	 */
+	private Map<IModel<T>, Integer> frequencies = new Bounded<IModel<T>, Integer>(
+			MAX_FREQUENCIES);
+
+	/**
+	 * Models of prefetched children by node models.
+	 */
+	private transient Map<IModel<T>, Future<List<IModel<T>>>> cache;
+
+	/**
+	 * Models of expanded nodes whose children were not requested yet.
+	 */
+	private transient Set<IModel<T>> expanded;
+
+	/**
+	 * Prefetch grandchildren of expanded nodes with the given thread-safe
+	 * provider, for at most 10 children.
+	 * 
+	 * @param provider
+	 *            provider to wrap
+	 */
+	public PrefetchingTreeProvider(ITreeProvider<T> provider)
+	{
+		this(provider, 1, 10);
+	}
+
+	/**
+	 * Wrap the given thread-safe provider, using it for prefetching too.
+	 * 
+	 * @param provider
+	 *            provider to wrap
+	 * @param depth
+	 *            levels to prefetch below the children of an expanded node
+	 * @param breadth
+	 *            maximum count of children of each node to prefetch for
+	 */
+	public PrefetchingTreeProvider(ITreeProvider<T> provider, int depth, int breadth)
+	{
+		this(provider, provider, depth, breadth);
+	}
+
+	/**
+	 * Wrap the given provider, prefetching with a separate provider, which is
+	 * used by one pool thread at a time and detached after each prefetch.
+	 * 
+	 * @param provider
+	 *            provider to wrap
+	 * @param loader
+	 *            provider to prefetch with
+	 * @param depth
+	 *            levels to prefetch below the children of an expanded node
+	 * @param breadth
+	 *            maximum count of children of each node to prefetch for
+	 */
+	public PrefetchingTreeProvider(ITreeProvider<T> provider, ITreeProvider<T> loader,
+			int depth, int breadth)
+	{
+		if (provider == null)
+		{
+			throw new IllegalArgumentException("argument [provider] cannot be null");
+		}
+		if (loader == null)
+		{
+			throw new IllegalArgumentException("argument [loader] cannot be null");
+		}
+
+		this.provider = provider;
+		this.loader = loader;
+		this.depth = depth;
+		this.breadth = breadth;
+	}
+
+	public Iterator<? extends T> getRoots()
+	{
+		return provider.getRoots();
+	}
+
+	public boolean hasChildren(T object)
+	{
+		return provider.hasChildren(object);
+	}
+
+	/**
+	 * Get the prefetched children if available, otherwise the children are
+	 * loaded from the wrapped provider. Prefetched children are served once
+	 * only.
+	 * 
+	 * If the given node was expanded, prefetching of its children's
+	 * descendants starts.
+	 */
+	public Iterator<? extends T> getChildren(T object)
+	{
+		IModel<T> model = provider.model(object);
+		model.detach();
+
+		List<T> children = prefetched(model);
+		if (children == null)
+		{
+			children = new ArrayList<T>();
+			Iterator<? extends T> iterator = provider.getChildren(object);
+			while (iterator.hasNext())
+			{
+				children.add(iterator.next());
+			}
+		}
+
+		if (expanded != null && expanded.remove(model))
+		{
+			prefetch(children, depth, new HashMap<IModel<T>, Integer>(frequencies), provider);
+		}
+
+		return children.iterator();
+	}
+
+	/**
+	 * Get the children prefetched for the given node model, never waiting for
+	 * prefetching in progress.
+	 * 
+	 * @return children or <code>null</code> if not prefetched
+	 */
+	private List<T> prefetched(IModel<T> model)
+	{
+		Future<List<IModel<T>>> future = getCache().remove(model);
+		if (future != null)
+		{
+			if (future.isDone())
+			{
+				try
+				{
+					List<IModel<T>> models = future.get();
+
+					List<T> children = new ArrayList<T>(models.size());
+					for (IModel<T> child : models)
+					{
+						children.add(child.getObject());
+						child.detach();
+					}
+					return children;
+				}
+				catch (InterruptedException ex)
+				{
+					Thread.currentThread().interrupt();
+
+					throw new WicketRuntimeException(ex);
+				}
+				catch (ExecutionException ex)
+				{
+					// failed prefetching is evicted already
+				}
+			}
+			else
+			{
+				// don't wait for pending prefetching
+				future.cancel(false);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Prefetch descendants of the given expanded node, as soon as its children
+	 * are requested.
+	 * 
+	 * @see #getChildren(Object)
+	 */
+	public void prefetch(T object)
+	{
+		IModel<T> model = provider.model(object);
+		model.detach();
+
+		Integer frequency = frequencies.get(model);
+		frequencies.put(model, frequency == null ? 1 : frequency + 1);
+
+		if (expanded == null)
+		{
+			expanded = new HashSet<IModel<T>>();
+		}
+		expanded.add(model);
+	}
+
+	/**
+	 * Prefetch children of the given nodes, prioritized by their frequencies.
+	 * 
+	 * @param levels
+	 *            count of levels to prefetch
+	 * @param frequencies
+	 *            snapshot of frequencies to prioritize nodes
+	 * @param provider
+	 *            provider of the current thread
+	 */
+	private void prefetch(List<T> nodes, int levels, Map<IModel<T>, Integer> frequencies,
+			ITreeProvider<T> provider)
+	{
+		if (levels < 1)
+		{
+			return;
+		}
+
+		final Map<T, Integer> priorities = new HashMap<T, Integer>();
+		for (T node : nodes)
+		{
+			if (provider.hasChildren(node))
+			{
+				IModel<T> model = provider.model(node);
+				model.detach();
+
+				Integer frequency = frequencies.get(model);
+				priorities.put(node, frequency == null ? 0 : frequency);
+			}
+		}
+
+		List<T> prioritized = new ArrayList<T>(priorities.keySet());
+		Collections.sort(prioritized, new Comparator<T>()
+		{
+			public int compare(T t1, T t2)
+			{
+				return priorities.get(t2) - priorities.get(t1);
+			}
+		});
+		for (int i = 0; i < prioritized.size() && i < breadth; i++)
+		{
+			T node = prioritized.get(i);
+
+			IModel<T> model = provider.model(node);
+			model.detach();
+
+			prefetch(node, model, levels, frequencies);
+		}
+	}
+
+	/**
+	 * Prefetch children of the given node asynchronously.
+	 * 
+	 * @param levels
+	 *            count of levels to prefetch
+	 * @param frequencies
+	 *            snapshot of frequencies to prioritize children
+	 */
+	private void prefetch(final T object, IModel<T> model, final int levels,
+			final Map<IModel<T>, Integer> frequencies)
+	{
+		Map<IModel<T>, Future<List<IModel<T>>>> cache = getCache();
+		synchronized (cache)
+		{
+			if (cache.containsKey(model))
+			{
+				return;
+			}
+
+			try
+			{
+				cache.put(model, getExecutor().submit(new Callable<List<IModel<T>>>()
+				{
+					public List<IModel<T>> call() throws Exception
+					{
+						if (loader == provider)
+						{
+							return load(object, levels, frequencies);
+						}
+
+						synchronized (loader)
+						{
+							try
+							{
+								return load(object, levels, frequencies);
+							}
+							finally
+							{
+								loader.detach();
+							}
+						}
+					}
+				}));
+			}
+			catch (RejectedExecutionException skip)
+			{
+			}
+		}
+	}
+
+	/**
+	 * Load the children of the given node on a pool thread and prefetch their
+	 * descendants.
+	 * 
+	 * @return detached models of the children
+	 */
+	private List<IModel<T>> load(T object, int levels, Map<IModel<T>, Integer> frequencies)
+	{
+		List<T> children = new ArrayList<T>();
+
+		Iterator<? extends T> iterator = loader.getChildren(object);
+		while (iterator.hasNext())
+		{
+			children.add(iterator.next());
+		}
+
+		prefetch(children, levels - 1, frequencies, loader);
+
+		List<IModel<T>> models = new ArrayList<IModel<T>>(children.size());
+		for (T child : children)
+		{
+			IModel<T> model = loader.model(child);
+			model.detach();
+			models.add(model);
+		}
+		return models;
+	}
+
+	private Map<IModel<T>, Future<List<IModel<T>>>> getCache()
+	{
+		if (cache == null)
+		{
+			cache = Collections.synchronizedMap(new Bounded<IModel<T>, Future<List<IModel<T>>>>(
+					MAX_CACHED));
+		}
+		return cache;
+	}
+
+	/**
+	 * Forget all prefetched children.
+	 */
+	public void reset()
+	{
+		getCache().clear();
+	}
+
+	public IModel<T> model(T object)
+	{
+		return provider.model(object);
+	}
+
+	public void detach()
+	{
+		expanded = null;
+
+		provider.detach();
+	}
+
+	/**
+	 * Get the executor to prefetch children with - by default a bounded pool
+	 * of daemon threads shared by all instances, shut down with the
+	 * application. Prefetching is skipped if the executor rejects it.
+	 * 
+	 * Override to use an executor managed by your application.
+	 * 
+	 * @return executor
+	 */
+	protected ExecutorService getExecutor()
+	{
+		return SharedExecutors.get("PrefetchingTreeProvider", 2);
+	}
+
+	/**
+	 * A map bounded to its recently accessed entries.
+	 */
+	private static class Bounded<K, V> extends LinkedHashMap<K, V>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int max;
+
+		public Bounded(int max)
+		{
+			super(16, 0.75f, true);
+
+			this.max = max;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+		{
+			return size() > max;
+		}
+	}
+}
@@ -15,15 +15,20 @@
  */
 package wickettree.util;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IDetachable;
 import org.apache.wicket.model.IModel;
 
+import wickettree.IKeyingTreeProvider;
 import wickettree.ITreeProvider;
 
 /**
@@ -32,7 +37,16 @@ import wickettree.ITreeProvider;
  * Make sure that the containing model calls {@link IDetachable#detach()} on its
  * model object.
  * 
+ * If the provider is a {@link IKeyingTreeProvider}, lookups do not need to
+ * create models.
+ * 
+ * Serializes to its models only, preceded by their keys if the provider is
+ * keying. Numeric keys take a few bytes only, while string keys are written in
+ * full in addition to their models.
+ * 
  * @see ITreeProvider#model(Object)
+ * @see IKeyingTreeProvider#key(Object)
+ * @see Varints#writeKey(java.io.ObjectOutput, Object)
  * 
  * @author Sven Meier
  */
@@ -43,7 +57,10 @@ public class ProviderSubset<T> implements Set<T>, IDetachable
 
 	private ITreeProvider<T> provider;
 
-	private Set<IModel<T>> models = new HashSet<IModel<T>>();
+	/**
+	 * Models by their keys, or by themselves if the provider is not keying.
+	 */
+	private transient Map<Object, IModel<T>> models = new HashMap<Object, IModel<T>>();
 
 	/**
 	 * Create an empty subset.
@@ -80,7 +97,7 @@ public class ProviderSubset<T> implements Set<T>, IDetachable
 
 	public void detach()
 	{
-		for (IModel<T> model : models)
+		for (IModel<T> model : models.values())
 		{
 			model.detach();
 		}
@@ -105,29 +122,30 @@ public class ProviderSubset<T> implements Set<T>, IDetachable
 
 	public boolean contains(Object o)
 	{
-		IModel<T> model = model(o);
-
-		boolean contains = models.contains(model);
-
-		model.detach();
-
-		return contains;
+		return models.containsKey(key(o));
 	}
 
 	public boolean add(T t)
 	{
-		return models.add(model(t));
-	}
+		IModel<T> model = model(t);
 
-	public boolean remove(Object o)
-	{
-		IModel<T> model = model(o);
+		Object key = Keys.key(provider, t, model);
+
+		if (models.containsKey(key))
+		{
+			model.detach();
 
-		boolean removed = models.remove(model);
+			return false;
+		}
 
-		model.detach();
+		models.put(key, model);
 
-		return removed;
+		return true;
+	}
+
+	public boolean remove(Object o)
+	{
+		return models.remove(key(o)) != null;
 	}
 
 	public Iterator<T> iterator()
@@ -135,7 +153,7 @@ public class ProviderSubset<T> implements Set<T>, IDetachable
 		return new Iterator<T>()
 		{
 
-			private Iterator<IModel<T>> iterator = models.iterator();
+			private Iterator<IModel<T>> iterator = models.values().iterator();
 
 			private IModel<T> current;
 
@@ -212,11 +230,56 @@ public class ProviderSubset<T> implements Set<T>, IDetachable
 		throw new UnsupportedOperationException();
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+
+		boolean keying = provider instanceof IKeyingTreeProvider<?>;
+
+		Varints.writeLong(out, models.size());
+		for (Map.Entry<Object, IModel<T>> entry : models.entrySet())
+		{
+			if (keying)
+			{
+				Varints.writeKey(out, entry.getKey());
+			}
+			out.writeObject(entry.getValue());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		boolean keying = provider instanceof IKeyingTreeProvider<?>;
+
+		int size = (int)Varints.readLong(in);
+		models = new HashMap<Object, IModel<T>>(size * 2);
+		for (int m = 0; m < size; m++)
+		{
+			Object key = null;
+			if (keying)
+			{
+				key = Varints.readKey(in);
+			}
+			IModel<T> model = (IModel<T>)in.readObject();
+
+			models.put(keying ? key : model, model);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private IModel<T> model(Object o)
 	{
 		return provider.model((T)o);
 	}
+
+	@SuppressWarnings("unchecked")
+	private Object key(Object o)
+	{
+		return Keys.key(provider, (T)o);
+	}
 	
 	/**
 	 * Create a model holding this set.
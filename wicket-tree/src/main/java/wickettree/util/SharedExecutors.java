@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors shared by all instances of a class, each a bounded pool of daemon
+ * threads created on first use. All executors are shut down with the
+ * application.
+ * 
+ * @see Initializer
+ * 
+ * @author Sven Meier
+ */
+final class SharedExecutors
+{
+
+	/**
+	 * Maximum count of queued tasks of each executor.
+	 */
+	private static final int MAX_QUEUED = 100;
+
+	private static final Map<String, ExecutorService> executors = new HashMap<String, ExecutorService>();
+
+	private SharedExecutors()
+	{
+	}
+
+	/**
+	 * Get the executor with the given name.
+	 * 
+	 * @param name
+	 *            name of executor, also used for its threads
+	 * @param threads
+	 *            count of threads
+	 * @return executor
+	 */
+	public static synchronized ExecutorService get(final String name, int threads)
+	{
+		ExecutorService executor = executors.get(name);
+		if (executor == null || executor.isShutdown())
+		{
+			executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(MAX_QUEUED), new ThreadFactory()
+					{
+						public Thread newThread(Runnable runnable)
+						{
+							Thread thread = new Thread(runnable, name);
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executors.put(name, executor);
+		}
+		return executor;
+	}
+
+	/**
+	 * Shut down all executors, tasks already queued are still executed.
+	 */
+	public static synchronized void shutdown()
+	{
+		for (ExecutorService executor : executors.values())
+		{
+			executor.shutdown();
+		}
+		executors.clear();
+	}
+}
@@ -15,6 +15,9 @@
  */
 package wickettree.util;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.wicket.extensions.markup.html.repeater.data.sort.ISortState;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.ISortableDataProvider;
 import org.apache.wicket.extensions.markup.html.repeater.util.SingleSortState;
@@ -24,13 +27,15 @@ import wickettree.ISortableTreeProvider;
 
 /**
  * Convenience implementation of a tree provider that can also act as a locator
- * for a {@link SingleSortState} object.
+ * for a {@link SingleSortState} or {@link CompoundSortState} object.
+ * 
+ * @see #getSorts()
  * 
  * @author Sven Meier
  */
 public abstract class SortableTreeProvider<T> implements ISortableTreeProvider<T>
 {
-	private SingleSortState state = new SingleSortState();
+	private ISortState state = new SingleSortState();
 
 	/**
 	 * @see ISortableDataProvider#getSortState()
@@ -45,23 +50,49 @@ public abstract class SortableTreeProvider<T> implements ISortableTreeProvider<T
 	 */
 	public final void setSortState(ISortState state)
 	{
-		if (!(state instanceof SingleSortState))
+		if (!(state instanceof SingleSortState) && !(state instanceof CompoundSortState))
 		{
 			throw new IllegalArgumentException(
-					"argument [state] must be an instance of SingleSortState, but it is ["
+					"argument [state] must be an instance of SingleSortState or CompoundSortState, but it is ["
 							+ state.getClass().getName() + "]:[" + state.toString() + "]");
 		}
-		this.state = (SingleSortState)state;
+		this.state = state;
 	}
 
 	/**
 	 * Returns current sort state
 	 * 
-	 * @return current sort state
+	 * @return current sort state, the primary sort param for a
+	 *         {@link CompoundSortState}
 	 */
 	public SortParam getSort()
 	{
-		return state.getSort();
+		if (state instanceof CompoundSortState)
+		{
+			List<SortParam> sorts = ((CompoundSortState)state).getSorts();
+			return sorts.isEmpty() ? null : sorts.get(0);
+		}
+		return ((SingleSortState)state).getSort();
+	}
+
+	/**
+	 * Returns all current sort params.
+	 * 
+	 * @return sort params, the primary param first
+	 */
+	public List<SortParam> getSorts()
+	{
+		if (state instanceof CompoundSortState)
+		{
+			return ((CompoundSortState)state).getSorts();
+		}
+
+		SortParam sort = ((SingleSortState)state).getSort();
+		if (sort == null)
+		{
+			return Collections.emptyList();
+		}
+		return Collections.singletonList(sort);
 	}
 
 	/**
@@ -72,7 +103,19 @@ public abstract class SortableTreeProvider<T> implements ISortableTreeProvider<T
 	 */
 	public void setSort(SortParam param)
 	{
-		state.setSort(param);
+		if (state instanceof CompoundSortState)
+		{
+			List<SortParam> sorts = Collections.emptyList();
+			if (param != null)
+			{
+				sorts = Collections.singletonList(param);
+			}
+			((CompoundSortState)state).setSorts(sorts);
+		}
+		else
+		{
+			((SingleSortState)state).setSort(param);
+		}
 	}
 
 	/**
@@ -0,0 +1,550 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+import org.apache.wicket.model.IModel;
+
+import wickettree.ITreeProvider;
+
+/**
+ * A sortable wrapper of a ITreeProvider, keeping sorted children by sort
+ * configuration, so switching between sort orders or re-rendering a sorted
+ * branch doesn't have to sort the children again.
+ * 
+ * With a {@link CompoundSortState} children are sorted by all sort params, the
+ * comparators for each param are combined once for each configuration.
+ * 
+ * Children are sorted lazily: Iteration over the first children of a node
+ * sorts these only, the remaining children are sorted when needed.
+ * 
+ * Sorted children are kept for at most {@link #getMaxCached()} lists of
+ * children. On detachment only the keys of the sorted children are kept, so
+ * nodes are not held across requests: In the next request the children are
+ * fetched again and put into the kept order, which is verified with a single
+ * comparison per child instead of sorting them again. Call
+ * {@link #invalidate(Object)} or {@link #invalidate()} when children change.
+ * 
+ * @see #getComparator(SortParam)
+ * @see CompoundSortState
+ * @see Keys
+ * 
+ * @author Sven Meier
+ */
+public abstract class SortingTreeProvider<T> extends SortableTreeProvider<T>
+{
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Key for roots.
+	 */
+	private static final Object ROOTS = new Object();
+
+	private ITreeProvider<T> provider;
+
+	/**
+	 * Sorted children by sort params and node key.
+	 */
+	private transient Map<List<Object>, Sorted<T>> cache;
+
+	/**
+	 * Keys of sorted children kept across requests, by sort params and node
+	 * key.
+	 */
+	private transient Map<List<Object>, Object[]> orders;
+
+	/**
+	 * Combined comparators by sort params.
+	 */
+	private transient Map<List<SortParam>, Comparator<T>> comparators;
+
+	/**
+	 * Wrap the given provider.
+	 * 
+	 * @param provider
+	 *            provider to wrap
+	 */
+	public SortingTreeProvider(ITreeProvider<T> provider)
+	{
+		if (provider == null)
+		{
+			throw new IllegalArgumentException("argument [provider] cannot be null");
+		}
+
+		this.provider = provider;
+	}
+
+	/**
+	 * Get the comparator for the given sort param.
+	 * 
+	 * @param param
+	 *            sort param
+	 * @return comparator, may be <code>null</code> if nodes should be not be
+	 *         sorted
+	 */
+	protected abstract Comparator<T> getComparator(SortParam param);
+
+	/**
+	 * Get the maximum count of cached lists of children.
+	 * 
+	 * @return maximum count, <code>100</code> by default
+	 */
+	protected int getMaxCached()
+	{
+		return 100;
+	}
+
+	public Iterator<? extends T> getRoots()
+	{
+		return sort(ROOTS, null);
+	}
+
+	public boolean hasChildren(T object)
+	{
+		return provider.hasChildren(object);
+	}
+
+	public Iterator<? extends T> getChildren(T object)
+	{
+		return sort(Keys.key(provider, object), object);
+	}
+
+	private Iterator<? extends T> sort(Object key, T object)
+	{
+		List<SortParam> sorts = new ArrayList<SortParam>(getSorts());
+		Comparator<T> comparator = getComparator(sorts);
+		if (comparator == null)
+		{
+			return unsorted(object);
+		}
+
+		List<Object> cacheKey = new ArrayList<Object>(2);
+		cacheKey.add(sorts);
+		cacheKey.add(key);
+
+		Map<List<Object>, Sorted<T>> cache = getCache();
+		Sorted<T> sorted = cache.get(cacheKey);
+		if (sorted == null)
+		{
+			List<T> children = new ArrayList<T>();
+			Iterator<? extends T> iterator = unsorted(object);
+			while (iterator.hasNext())
+			{
+				children.add(iterator.next());
+			}
+
+			sorted = reorder(getOrders().remove(cacheKey), children, comparator);
+			if (sorted == null)
+			{
+				sorted = new Sorted<T>(new ArrayList<T>(), children, comparator);
+			}
+			cache.put(cacheKey, sorted);
+		}
+		return sorted.iterator();
+	}
+
+	/**
+	 * Put the given children into the kept order of their keys.
+	 * 
+	 * @param order
+	 *            keys of sorted children, may be <code>null</code>
+	 * @return sorted children or <code>null</code> if the order is not valid
+	 *         anymore
+	 */
+	private Sorted<T> reorder(Object[] order, List<T> children, Comparator<T> comparator)
+	{
+		if (order == null)
+		{
+			return null;
+		}
+
+		List<Object> keys = new ArrayList<Object>(children.size());
+		Map<Object, T> byKey = new HashMap<Object, T>();
+		for (T child : children)
+		{
+			Object key = Keys.key(provider, child);
+			keys.add(key);
+			byKey.put(key, child);
+		}
+
+		List<T> prefix = new ArrayList<T>(order.length);
+		for (Object key : order)
+		{
+			T child = byKey.remove(key);
+			if (child != null)
+			{
+				if (!prefix.isEmpty() && comparator.compare(prefix.get(prefix.size() - 1), child) > 0)
+				{
+					return null;
+				}
+				prefix.add(child);
+			}
+		}
+
+		List<T> rest = new ArrayList<T>(byKey.size());
+		for (int i = 0; i < keys.size(); i++)
+		{
+			if (byKey.containsKey(keys.get(i)))
+			{
+				rest.add(children.get(i));
+			}
+		}
+
+		Sorted<T> sorted = new Sorted<T>(prefix, rest, comparator);
+		if (!sorted.isValid())
+		{
+			return null;
+		}
+		return sorted;
+	}
+
+	/**
+	 * Get the combined comparator for the given sort params.
+	 * 
+	 * @return comparator or <code>null</code> if not sorted
+	 */
+	private Comparator<T> getComparator(List<SortParam> sorts)
+	{
+		if (comparators == null)
+		{
+			comparators = new HashMap<List<SortParam>, Comparator<T>>();
+		}
+
+		if (!comparators.containsKey(sorts))
+		{
+			List<Comparator<T>> pipeline = new ArrayList<Comparator<T>>();
+			for (SortParam sort : sorts)
+			{
+				Comparator<T> comparator = getComparator(sort);
+				if (comparator != null)
+				{
+					pipeline.add(comparator);
+				}
+			}
+
+			Comparator<T> comparator = null;
+			if (pipeline.size() == 1)
+			{
+				comparator = pipeline.get(0);
+			}
+			else if (pipeline.size() > 1)
+			{
+				comparator = new CompoundComparator<T>(pipeline);
+			}
+			comparators.put(sorts, comparator);
+		}
+
+		return comparators.get(sorts);
+	}
+
+	private Iterator<? extends T> unsorted(T object)
+	{
+		if (object == null)
+		{
+			return provider.getRoots();
+		}
+		else
+		{
+			return provider.getChildren(object);
+		}
+	}
+
+	private Map<List<Object>, Sorted<T>> getCache()
+	{
+		if (cache == null)
+		{
+			cache = new LinkedHashMap<List<Object>, Sorted<T>>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Object>, Sorted<T>> eldest)
+				{
+					return size() > getMaxCached();
+				}
+			};
+		}
+		return cache;
+	}
+
+	private Map<List<Object>, Object[]> getOrders()
+	{
+		if (orders == null)
+		{
+			orders = new LinkedHashMap<List<Object>, Object[]>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Object>, Object[]> eldest)
+				{
+					return size() > getMaxCached();
+				}
+			};
+		}
+		return orders;
+	}
+
+	/**
+	 * Forget the sorted children of the given node.
+	 * 
+	 * @param object
+	 *            node, <code>null</code> for the roots
+	 */
+	public void invalidate(T object)
+	{
+		Object key = object == null ? ROOTS : Keys.key(provider, object);
+
+		if (cache != null)
+		{
+			invalidate(cache.keySet().iterator(), key);
+		}
+		if (orders != null)
+		{
+			invalidate(orders.keySet().iterator(), key);
+		}
+	}
+
+	private void invalidate(Iterator<List<Object>> keys, Object key)
+	{
+		while (keys.hasNext())
+		{
+			if (keys.next().get(1).equals(key))
+			{
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * Forget all sorted children and comparators.
+	 */
+	public void invalidate()
+	{
+		cache = null;
+		orders = null;
+		comparators = null;
+	}
+
+	public IModel<T> model(T object)
+	{
+		return provider.model(object);
+	}
+
+	/**
+	 * Keeps the keys of all sorted children only.
+	 */
+	@Override
+	public void detach()
+	{
+		if (cache != null)
+		{
+			Map<List<Object>, Object[]> orders = getOrders();
+			for (Map.Entry<List<Object>, Sorted<T>> entry : cache.entrySet())
+			{
+				orders.put(entry.getKey(), entry.getValue().keys(provider));
+			}
+			cache = null;
+		}
+
+		provider.detach();
+	}
+
+	/**
+	 * A comparator delegating to several comparators in turn.
+	 */
+	private static class CompoundComparator<T> implements Comparator<T>
+	{
+		private final List<Comparator<T>> comparators;
+
+		public CompoundComparator(List<Comparator<T>> comparators)
+		{
+			this.comparators = new ArrayList<Comparator<T>>(comparators);
+		}
+
+		public int compare(T t1, T t2)
+		{
+			for (int i = 0; i < comparators.size(); i++)
+			{
+				int compare = comparators.get(i).compare(t1, t2);
+				if (compare != 0)
+				{
+					return compare;
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Children sorted on demand, keeping the remaining unsorted children in a
+	 * heap. Equal children keep their original order.
+	 * 
+	 * Children sorted in a previous request precede the remaining children.
+	 */
+	private static class Sorted<T>
+	{
+		private final Object[] elements;
+
+		private final Comparator<T> comparator;
+
+		/**
+		 * Indices of elements not sorted yet.
+		 */
+		private final int[] heap;
+
+		private int heapSize;
+
+		/**
+		 * Elements sorted so far.
+		 */
+		private final List<T> sorted;
+
+		public Sorted(List<T> prefix, List<T> children, Comparator<T> comparator)
+		{
+			this.comparator = comparator;
+
+			sorted = new ArrayList<T>(prefix.size() + children.size());
+			sorted.addAll(prefix);
+			sorted.addAll(children);
+			elements = sorted.toArray();
+			sorted.subList(prefix.size(), sorted.size()).clear();
+
+			heap = new int[children.size()];
+			for (int i = 0; i < heap.length; i++)
+			{
+				heap[i] = prefix.size() + i;
+			}
+			heapSize = heap.length;
+			for (int i = heapSize / 2 - 1; i >= 0; i--)
+			{
+				siftDown(i);
+			}
+		}
+
+		/**
+		 * Do the remaining children follow the sorted children.
+		 */
+		@SuppressWarnings("unchecked")
+		public boolean isValid()
+		{
+			if (sorted.isEmpty() || heapSize == 0)
+			{
+				return true;
+			}
+			return comparator.compare(sorted.get(sorted.size() - 1), (T)elements[heap[0]]) <= 0;
+		}
+
+		/**
+		 * Get the keys of all children sorted so far.
+		 */
+		public Object[] keys(ITreeProvider<T> provider)
+		{
+			Object[] keys = new Object[sorted.size()];
+			for (int i = 0; i < keys.length; i++)
+			{
+				keys[i] = Keys.key(provider, sorted.get(i));
+			}
+			return keys;
+		}
+
+		public Iterator<T> iterator()
+		{
+			return new Iterator<T>()
+			{
+				private int index;
+
+				public boolean hasNext()
+				{
+					return index < elements.length;
+				}
+
+				public T next()
+				{
+					if (!hasNext())
+					{
+						throw new NoSuchElementException();
+					}
+					return get(index++);
+				}
+
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@SuppressWarnings("unchecked")
+		private T get(int index)
+		{
+			while (sorted.size() <= index)
+			{
+				int first = heap[0];
+				heap[0] = heap[--heapSize];
+				siftDown(0);
+
+				sorted.add((T)elements[first]);
+			}
+			return sorted.get(index);
+		}
+
+		private void siftDown(int i)
+		{
+			int element = heap[i];
+			while (true)
+			{
+				int child = 2 * i + 1;
+				if (child >= heapSize)
+				{
+					break;
+				}
+				if (child + 1 < heapSize && less(heap[child + 1], heap[child]))
+				{
+					child++;
+				}
+				if (!less(heap[child], element))
+				{
+					break;
+				}
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = element;
+		}
+
+		@SuppressWarnings("unchecked")
+		private boolean less(int index1, int index2)
+		{
+			int compare = comparator.compare((T)elements[index1], (T)elements[index2]);
+			if (compare == 0)
+			{
+				return index1 < index2;
+			}
+			return compare < 0;
+		}
+	}
+}
@@ -0,0 +1,687 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.model.IModel;
+
+import wickettree.AbstractTree;
+import wickettree.ITreeProvider;
+
+/**
+ * An in-memory index of node labels, for searching nodes and revealing them in
+ * a tree:
+ * 
+ * <pre>
+ * List&lt;Foo&gt; matches = index.reveal(&quot;some query&quot;, 100, tree);
+ * </pre>
+ * 
+ * A label is split into lowercase words, a query matches all nodes with words
+ * starting with each of the query's words. Nodes are indexed once on
+ * {@link #build()} and can be updated incrementally afterwards. Removed nodes
+ * are dropped from the index lazily, once they make up half of it.
+ * 
+ * All nodes are resolved from their models while holding the lock of the
+ * index, since these models are shared by all users of the index.
+ * 
+ * Since building the index traverses the whole tree, it should be shared, e.g.
+ * held by the application and updated on changes of the nodes.
+ * 
+ * @see #search(String, int)
+ * @see #reveal(String, int, AbstractTree)
+ * 
+ * @author Sven Meier
+ */
+public abstract class TreeIndex<T> implements Serializable
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private ITreeProvider<T> provider;
+
+	/**
+	 * Models of all indexed nodes, by id.
+	 */
+	private List<IModel<T>> models;
+
+	/**
+	 * Keys of all indexed nodes, by id.
+	 */
+	private List<Object> keys;
+
+	/**
+	 * Ids of parents, by id.
+	 */
+	private Ints parents;
+
+	/**
+	 * Ids of children, by id, <code>null</code> if there are none.
+	 */
+	private List<Ints> children;
+
+	/**
+	 * Words of labels, by id.
+	 */
+	private List<String[]> words;
+
+	/**
+	 * Ids of removed nodes.
+	 */
+	private BitSet removed;
+
+	/**
+	 * Ids by keys.
+	 */
+	private Map<Object, Integer> ids;
+
+	/**
+	 * Ids by words, including ids of removed nodes until compaction.
+	 */
+	private TreeMap<String, Ints> postings;
+
+	public TreeIndex(ITreeProvider<T> provider)
+	{
+		if (provider == null)
+		{
+			throw new IllegalArgumentException("argument [provider] cannot be null");
+		}
+
+		this.provider = provider;
+
+		clear();
+	}
+
+	/**
+	 * Get the label of the given node.
+	 * 
+	 * @param t
+	 *            node
+	 * @return label
+	 */
+	protected abstract String getLabel(T t);
+
+	/**
+	 * Build the index by traversing all nodes.
+	 */
+	public synchronized void build()
+	{
+		clear();
+
+		index(-1, provider.getRoots());
+
+		provider.detach();
+	}
+
+	private void clear()
+	{
+		models = new ArrayList<IModel<T>>();
+		keys = new ArrayList<Object>();
+		parents = new Ints();
+		children = new ArrayList<Ints>();
+		words = new ArrayList<String[]>();
+		removed = new BitSet();
+		ids = new HashMap<Object, Integer>();
+		postings = new TreeMap<String, Ints>();
+	}
+
+	/**
+	 * Index the given nodes and their descendants.
+	 */
+	private void index(int parent, Iterator<? extends T> iterator)
+	{
+		while (iterator.hasNext())
+		{
+			T t = iterator.next();
+
+			int id = index(parent, t);
+
+			if (provider.hasChildren(t))
+			{
+				index(id, provider.getChildren(t));
+			}
+		}
+	}
+
+	private int index(int parent, T t)
+	{
+		IModel<T> model = provider.model(t);
+		model.detach();
+
+		int id = models.size();
+		Object key = Keys.key(provider, t, model);
+
+		models.add(model);
+		keys.add(key);
+		parents.add(parent);
+		children.add(null);
+		ids.put(key, id);
+
+		if (parent != -1)
+		{
+			Ints siblings = children.get(parent);
+			if (siblings == null)
+			{
+				siblings = new Ints();
+				children.set(parent, siblings);
+			}
+			siblings.add(id);
+		}
+
+		String[] split = split(getLabel(t));
+		words.add(split);
+		post(id, split);
+
+		return id;
+	}
+
+	private void post(int id, String[] split)
+	{
+		for (String word : split)
+		{
+			Ints ids = postings.get(word);
+			if (ids == null)
+			{
+				ids = new Ints();
+				postings.put(word, ids);
+			}
+			ids.add(id);
+		}
+	}
+
+	private void unpost(int id, String[] split)
+	{
+		for (String word : split)
+		{
+			Ints ids = postings.get(word);
+			ids.remove(id);
+			if (ids.size == 0)
+			{
+				postings.remove(word);
+			}
+		}
+	}
+
+	/**
+	 * Add a node and its descendants to the index. If the node is indexed
+	 * already, it is removed first.
+	 * 
+	 * @param parent
+	 *            parent of the node, <code>null</code> for a root
+	 * @param t
+	 *            node to add
+	 */
+	public synchronized void add(T parent, T t)
+	{
+		remove(t);
+
+		int parentId = -1;
+		if (parent != null)
+		{
+			parentId = id(parent);
+			if (parentId == -1)
+			{
+				throw new IllegalArgumentException("parent is not indexed");
+			}
+		}
+
+		int id = index(parentId, t);
+		if (provider.hasChildren(t))
+		{
+			index(id, provider.getChildren(t));
+		}
+	}
+
+	/**
+	 * Update the label of the given node.
+	 * 
+	 * @param t
+	 *            node to update
+	 */
+	public synchronized void update(T t)
+	{
+		int id = id(t);
+		if (id != -1)
+		{
+			unpost(id, words.get(id));
+
+			String[] split = split(getLabel(t));
+			words.set(id, split);
+			post(id, split);
+		}
+	}
+
+	/**
+	 * Remove a node and its descendants from the index.
+	 * 
+	 * @param t
+	 *            node to remove
+	 */
+	public synchronized void remove(T t)
+	{
+		int id = id(t);
+		if (id == -1)
+		{
+			return;
+		}
+
+		int parent = parents.get(id);
+		if (parent != -1)
+		{
+			children.get(parent).remove(id);
+		}
+
+		Ints subtree = new Ints();
+		subtree.add(id);
+		for (int i = 0; i < subtree.size; i++)
+		{
+			int removing = subtree.get(i);
+
+			Ints descendants = children.get(removing);
+			if (descendants != null)
+			{
+				for (int d = 0; d < descendants.size; d++)
+				{
+					subtree.add(descendants.get(d));
+				}
+			}
+
+			// postings are dropped on compaction
+			removed.set(removing);
+			ids.remove(keys.get(removing));
+			models.set(removing, null);
+			keys.set(removing, null);
+			words.set(removing, null);
+			children.set(removing, null);
+		}
+
+		if (removed.cardinality() * 2 > models.size())
+		{
+			compact();
+		}
+	}
+
+	/**
+	 * Drop all removed nodes, keeping the order of the remaining ids.
+	 */
+	private void compact()
+	{
+		int[] map = new int[models.size()];
+		int size = 0;
+		for (int id = 0; id < map.length; id++)
+		{
+			map[id] = removed.get(id) ? -1 : size++;
+		}
+
+		List<IModel<T>> models = new ArrayList<IModel<T>>(size);
+		List<Object> keys = new ArrayList<Object>(size);
+		Ints parents = new Ints();
+		List<Ints> children = new ArrayList<Ints>(size);
+		List<String[]> words = new ArrayList<String[]>(size);
+		for (int id = 0; id < map.length; id++)
+		{
+			if (map[id] != -1)
+			{
+				models.add(this.models.get(id));
+				keys.add(this.keys.get(id));
+				int parent = this.parents.get(id);
+				parents.add(parent == -1 ? -1 : map[parent]);
+				children.add(remap(this.children.get(id), map));
+				words.add(this.words.get(id));
+
+				ids.put(this.keys.get(id), map[id]);
+			}
+		}
+
+		Iterator<Ints> postings = this.postings.values().iterator();
+		while (postings.hasNext())
+		{
+			Ints remapped = remap(postings.next(), map);
+			if (remapped == null)
+			{
+				postings.remove();
+			}
+		}
+
+		this.models = models;
+		this.keys = keys;
+		this.parents = parents;
+		this.children = children;
+		this.words = words;
+		this.removed = new BitSet();
+	}
+
+	/**
+	 * Remap the given ids in place, dropping ids of removed nodes.
+	 * 
+	 * @return remapped ids or <code>null</code> if none is left
+	 */
+	private static Ints remap(Ints ints, int[] map)
+	{
+		if (ints == null)
+		{
+			return null;
+		}
+
+		int size = 0;
+		for (int i = 0; i < ints.size; i++)
+		{
+			int id = map[ints.values[i]];
+			if (id != -1)
+			{
+				ints.values[size++] = id;
+			}
+		}
+		ints.size = size;
+
+		return size == 0 ? null : ints;
+	}
+
+	/**
+	 * Search nodes.
+	 * 
+	 * @param query
+	 *            words to search for
+	 * @param limit
+	 *            maximum count of matches
+	 * @return matching nodes
+	 */
+	public synchronized List<T> search(String query, int limit)
+	{
+		List<T> matches = new ArrayList<T>();
+
+		for (int id : ids(query, limit))
+		{
+			matches.add(resolve(models.get(id)));
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Search nodes and expand all their ancestors in the given tree. The
+	 * branches of all newly expanded ancestors are updated.
+	 * 
+	 * @param query
+	 *            words to search for
+	 * @param limit
+	 *            maximum count of matches
+	 * @param tree
+	 *            tree to expand nodes in
+	 * @return matching nodes
+	 * @see AbstractTree#updateBranch(Object, AjaxRequestTarget)
+	 */
+	public List<T> reveal(String query, int limit, AbstractTree<T> tree)
+	{
+		List<T> expanded = new ArrayList<T>();
+
+		List<T> matches = reveal(query, limit, tree.getModelObject(), expanded);
+
+		AjaxRequestTarget target = AjaxRequestTarget.get();
+		for (T t : expanded)
+		{
+			tree.updateBranch(t, target);
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Search nodes and expand all their ancestors.
+	 * 
+	 * Note that the caller is responsible to update any tree using the given
+	 * set of expanded nodes, e.g. with {@link wickettree.TableTree#modelChanged()}.
+	 * 
+	 * @param query
+	 *            words to search for
+	 * @param limit
+	 *            maximum count of matches
+	 * @param expanded
+	 *            expanded nodes, e.g. {@link AbstractTree#getModelObject()}
+	 * @return matching nodes
+	 * @see #reveal(String, int, AbstractTree)
+	 */
+	public List<T> reveal(String query, int limit, Set<T> expanded)
+	{
+		return reveal(query, limit, expanded, new ArrayList<T>());
+	}
+
+	/**
+	 * Search nodes and expand their ancestors, collecting the topmost newly
+	 * expanded ancestors.
+	 */
+	private List<T> reveal(String query, int limit, Set<T> expanded, List<T> changed)
+	{
+		List<T> matches = new ArrayList<T>();
+
+		List<T> ancestors = new ArrayList<T>();
+		Ints ancestorParents = new Ints();
+		synchronized (this)
+		{
+			BitSet ancestorIds = new BitSet();
+			for (int id : ids(query, limit))
+			{
+				matches.add(resolve(models.get(id)));
+
+				int parent = parents.get(id);
+				while (parent != -1 && !ancestorIds.get(parent))
+				{
+					ancestorIds.set(parent);
+
+					parent = parents.get(parent);
+				}
+			}
+
+			// ancestors have smaller ids than their descendants
+			Map<Integer, Integer> indices = new HashMap<Integer, Integer>();
+			for (int i = ancestorIds.nextSetBit(0); i >= 0; i = ancestorIds.nextSetBit(i + 1))
+			{
+				Integer parent = indices.get(parents.get(i));
+				ancestorParents.add(parent == null ? -1 : parent);
+
+				indices.put(i, ancestors.size());
+				ancestors.add(resolve(models.get(i)));
+			}
+		}
+
+		BitSet added = new BitSet();
+		for (int a = 0; a < ancestors.size(); a++)
+		{
+			T ancestor = ancestors.get(a);
+			if (expanded.add(ancestor))
+			{
+				added.set(a);
+
+				int parent = ancestorParents.get(a);
+				if (parent == -1 || !added.get(parent))
+				{
+					changed.add(ancestor);
+				}
+			}
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Get the ancestors of the given node.
+	 * 
+	 * @param t
+	 *            node
+	 * @return ancestors starting with the root, empty if node is not indexed
+	 */
+	public synchronized List<T> getAncestors(T t)
+	{
+		List<T> ancestors = new ArrayList<T>();
+
+		int id = id(t);
+		if (id != -1)
+		{
+			for (int parent = parents.get(id); parent != -1; parent = parents.get(parent))
+			{
+				ancestors.add(resolve(models.get(parent)));
+			}
+		}
+		Collections.reverse(ancestors);
+
+		return ancestors;
+	}
+
+	/**
+	 * Get the ids of nodes matching the given query, in order of indexing.
+	 */
+	private List<Integer> ids(String query, int limit)
+	{
+		List<Integer> ids = new ArrayList<Integer>();
+
+		String[] split = split(query);
+		if (split.length == 0)
+		{
+			return ids;
+		}
+
+		BitSet matches = null;
+		for (String word : split)
+		{
+			BitSet prefixed = new BitSet();
+			for (Ints postings : this.postings.subMap(word, word + Character.MAX_VALUE)
+					.values())
+			{
+				for (int i = 0; i < postings.size; i++)
+				{
+					prefixed.set(postings.values[i]);
+				}
+			}
+
+			if (matches == null)
+			{
+				matches = prefixed;
+			}
+			else
+			{
+				matches.and(prefixed);
+			}
+		}
+
+		matches.andNot(removed);
+
+		for (int i = matches.nextSetBit(0); i >= 0 && ids.size() < limit; i = matches
+				.nextSetBit(i + 1))
+		{
+			ids.add(i);
+		}
+
+		return ids;
+	}
+
+	private int id(T t)
+	{
+		IModel<T> model = provider.model(t);
+		model.detach();
+
+		Integer id = ids.get(Keys.key(provider, t, model));
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Resolve a shared model, the lock of this index has to be held.
+	 */
+	private T resolve(IModel<T> model)
+	{
+		T t = model.getObject();
+		model.detach();
+		return t;
+	}
+
+	/**
+	 * Split the given text into lowercase words.
+	 */
+	private static String[] split(String text)
+	{
+		List<String> split = new ArrayList<String>();
+		if (text != null)
+		{
+			int start = -1;
+			for (int i = 0; i <= text.length(); i++)
+			{
+				if (i < text.length() && Character.isLetterOrDigit(text.charAt(i)))
+				{
+					if (start == -1)
+					{
+						start = i;
+					}
+				}
+				else if (start != -1)
+				{
+					split.add(text.substring(start, i).toLowerCase());
+					start = -1;
+				}
+			}
+		}
+		return split.toArray(new String[split.size()]);
+	}
+
+	/**
+	 * A growable list of ints.
+	 */
+	private static class Ints implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int[] values = new int[4];
+
+		private int size;
+
+		public void add(int value)
+		{
+			if (size == values.length)
+			{
+				int[] grown = new int[size * 2];
+				System.arraycopy(values, 0, grown, 0, size);
+				values = grown;
+			}
+			values[size++] = value;
+		}
+
+		public int get(int index)
+		{
+			return values[index];
+		}
+
+		public void remove(int value)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (values[i] == value)
+				{
+					System.arraycopy(values, i + 1, values, i, size - i - 1);
+					size--;
+					return;
+				}
+			}
+		}
+	}
+}
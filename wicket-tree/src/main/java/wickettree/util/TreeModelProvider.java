@@ -163,7 +163,7 @@ public abstract class TreeModelProvider<T> implements ITreeProvider<T>
 	{
 		if (completeUpdate)
 		{
-			target.add(tree);
+			tree.updateBranch(null, target);
 		}
 		else
 		{
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import wickettree.IParentTreeProvider;
+import wickettree.ITreeProvider;
+
+/**
+ * Utility methods for paths of nodes, each costing calls to the provider
+ * proportional to the depth of the nodes only.
+ * 
+ * @see IParentTreeProvider
+ * 
+ * @author Sven Meier
+ */
+public final class TreePaths
+{
+
+	private TreePaths()
+	{
+	}
+
+	/**
+	 * Get the path to the given node.
+	 * 
+	 * @param provider
+	 *            provider of nodes
+	 * @param t
+	 *            node
+	 * @return all ancestors starting with the root, followed by the node
+	 */
+	public static <T> List<T> getPath(IParentTreeProvider<T> provider, T t)
+	{
+		List<T> path = new ArrayList<T>();
+
+		while (t != null)
+		{
+			path.add(t);
+
+			t = provider.getParent(t);
+		}
+
+		Collections.reverse(path);
+
+		return path;
+	}
+
+	/**
+	 * Get the depth of the given node.
+	 * 
+	 * @param provider
+	 *            provider of nodes
+	 * @param t
+	 *            node
+	 * @return depth, <code>0</code> for a root
+	 */
+	public static <T> int getDepth(IParentTreeProvider<T> provider, T t)
+	{
+		int depth = -1;
+
+		while (t != null)
+		{
+			depth++;
+
+			t = provider.getParent(t);
+		}
+
+		return depth;
+	}
+
+	/**
+	 * Is the given node a descendant of the given ancestor.
+	 * 
+	 * @param provider
+	 *            provider of nodes
+	 * @param t
+	 *            node
+	 * @param ancestor
+	 *            possible ancestor
+	 * @return <code>true</code> if node is a descendant
+	 */
+	public static <T> boolean isDescendant(IParentTreeProvider<T> provider, T t, T ancestor)
+	{
+		Object key = Keys.key(provider, ancestor);
+
+		t = provider.getParent(t);
+		while (t != null)
+		{
+			if (key.equals(Keys.key(provider, t)))
+			{
+				return true;
+			}
+
+			t = provider.getParent(t);
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Utility methods for compact serialization of tree state.
+ * 
+ * Numbers are written as variable length integers, small values taking a
+ * single byte only. Keys are written as numbers or strings if possible,
+ * avoiding the overhead of serialized wrapper objects. Strings are written as
+ * their length followed by their UTF-8 bytes, so they are not limited in
+ * length as with {@link DataOutput#writeUTF(String)}.
+ * 
+ * @author Sven Meier
+ */
+public final class Varints
+{
+
+	private static final int LONG = 0;
+
+	private static final int INTEGER = 1;
+
+	private static final int STRING = 2;
+
+	private static final int OBJECT = 3;
+
+	private static final String UTF_8 = "UTF-8";
+
+	private Varints()
+	{
+	}
+
+	/**
+	 * Write a number, zigzag encoded so small negative values are compact too.
+	 * 
+	 * @param out
+	 *            output to write to
+	 * @param value
+	 *            value to write
+	 */
+	public static void writeLong(DataOutput out, long value) throws IOException
+	{
+		long zigzag = (value << 1) ^ (value >> 63);
+
+		while ((zigzag & ~0x7fl) != 0)
+		{
+			out.writeByte((int)((zigzag & 0x7f) | 0x80));
+			zigzag >>>= 7;
+		}
+		out.writeByte((int)zigzag);
+	}
+
+	/**
+	 * Read a number.
+	 * 
+	 * @param in
+	 *            input to read from
+	 * @return read value
+	 * @see #writeLong(DataOutput, long)
+	 */
+	public static long readLong(DataInput in) throws IOException
+	{
+		long zigzag = 0;
+
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+
+			zigzag |= (long)(b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	/**
+	 * Write a key.
+	 * 
+	 * @param out
+	 *            output to write to
+	 * @param key
+	 *            key to write
+	 */
+	public static void writeKey(ObjectOutput out, Object key) throws IOException
+	{
+		if (key instanceof Long)
+		{
+			out.writeByte(LONG);
+			writeLong(out, (Long)key);
+		}
+		else if (key instanceof Integer)
+		{
+			out.writeByte(INTEGER);
+			writeLong(out, (Integer)key);
+		}
+		else if (key instanceof String)
+		{
+			out.writeByte(STRING);
+			byte[] bytes = ((String)key).getBytes(UTF_8);
+			writeLong(out, bytes.length);
+			out.write(bytes);
+		}
+		else
+		{
+			out.writeByte(OBJECT);
+			out.writeObject(key);
+		}
+	}
+
+	/**
+	 * Read a key.
+	 * 
+	 * @param in
+	 *            input to read from
+	 * @return read key
+	 * @see #writeKey(ObjectOutput, Object)
+	 */
+	public static Object readKey(ObjectInput in) throws IOException, ClassNotFoundException
+	{
+		int type = in.readUnsignedByte();
+		switch (type)
+		{
+			case LONG :
+				return Long.valueOf(readLong(in));
+			case INTEGER :
+				return Integer.valueOf((int)readLong(in));
+			case STRING :
+				long length = readLong(in);
+				if (length < 0 || length > Integer.MAX_VALUE)
+				{
+					throw new IOException("illegal string length " + length);
+				}
+				byte[] bytes = new byte[(int)length];
+				in.readFully(bytes);
+				return new String(bytes, UTF_8);
+			case OBJECT :
+				return in.readObject();
+			default :
+				throw new IOException("unknown key type " + type);
+		}
+	}
+}
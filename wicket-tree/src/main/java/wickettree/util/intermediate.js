@@ -0,0 +1,140 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+if (typeof(WicketTree) == "undefined") {
+	WicketTree = {};
+}
+
+/**
+ * Long polling for branches with intermediate children, a single poll for all
+ * branches of an update url.
+ * 
+ * Branches without token are updated with adaptive backoff: the wait doubles
+ * for each round they are still pending, starting at the given delay. Failed
+ * polls back off likewise.
+ */
+WicketTree.Intermediate = {
+
+	channels : {},
+
+	/**
+	 * Maximum multiple of the delay to back off to.
+	 */
+	maxBackoff : 16,
+
+	/**
+	 * A branch with intermediate children was rendered.
+	 */
+	pending : function(pollUrl, updateUrl, token, delay, timeout) {
+		var channel = WicketTree.Intermediate.channels[updateUrl];
+		if (!channel) {
+			channel = { tokens : {}, timed : false, polling : false, backoff : 1 };
+			WicketTree.Intermediate.channels[updateUrl] = channel;
+		}
+		channel.pollUrl = pollUrl;
+		channel.delay = delay;
+		channel.timeout = timeout;
+
+		if (token) {
+			if (channel.tokens[token]) {
+				return;
+			}
+			channel.tokens[token] = true;
+
+			// restart a running poll to include the new token
+			if (channel.transport) {
+				channel.transport.onreadystatechange = function() {};
+				channel.transport.abort();
+				channel.transport = null;
+				channel.polling = false;
+			}
+		} else {
+			channel.timed = true;
+		}
+
+		if (!channel.polling) {
+			channel.polling = true;
+			// coalesce all branches of the current response
+			setTimeout(function() { WicketTree.Intermediate.poll(updateUrl); }, 0);
+		}
+	},
+
+	poll : function(updateUrl) {
+		var channel = WicketTree.Intermediate.channels[updateUrl];
+		if (channel.transport) {
+			return;
+		}
+
+		var tokens = [];
+		for (var token in channel.tokens) {
+			tokens.push(token);
+		}
+		if (tokens.length == 0 && !channel.timed) {
+			channel.polling = false;
+			channel.backoff = 1;
+			return;
+		}
+
+		var next = function() { WicketTree.Intermediate.poll(updateUrl); };
+
+		var transport = Wicket.Ajax.createTransport();
+		channel.transport = transport;
+		transport.open("GET", WicketTree.Intermediate.url(channel.pollUrl, tokens,
+				channel.timed ? channel.delay * channel.backoff : channel.timeout), true);
+		transport.onreadystatechange = function() {
+			if (transport.readyState != 4) {
+				return;
+			}
+			channel.transport = null;
+
+			if (transport.status != 200) {
+				WicketTree.Intermediate.backoff(channel);
+				setTimeout(next, channel.delay * channel.backoff);
+				return;
+			}
+
+			var completed = [];
+			if (transport.responseText.length > 0) {
+				completed = transport.responseText.split(",");
+			}
+			for (var i = 0; i < completed.length; i++) {
+				delete channel.tokens[completed[i]];
+			}
+
+			var timedOut = completed.length == 0 && channel.timed;
+			if (timedOut) {
+				// branches still intermediate will be pending again
+				channel.timed = false;
+				WicketTree.Intermediate.backoff(channel);
+			}
+
+			if (completed.length > 0 || timedOut) {
+				// a single update for all completed branches
+				wicketAjaxGet(WicketTree.Intermediate.url(updateUrl, completed, timedOut), next, next);
+			} else {
+				next();
+			}
+		};
+		transport.send(null);
+	},
+
+	backoff : function(channel) {
+		channel.backoff = Math.min(channel.backoff * 2, WicketTree.Intermediate.maxBackoff);
+	},
+
+	url : function(url, tokens, timeout) {
+		return url + (url.indexOf("?") < 0 ? "?" : "&") + "tokens=" + tokens.join(",") + "&timeout=" + timeout;
+	}
+};
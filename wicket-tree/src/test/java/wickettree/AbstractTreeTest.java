@@ -0,0 +1,254 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+
+import wickettree.nested.BranchItem;
+
+/**
+ * Test for {@link AbstractTree}.
+ * 
+ * @author Sven Meier
+ */
+public class AbstractTreeTest extends TestCase
+{
+
+	private WicketTester tester;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		tester = new WicketTester();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		tester.destroy();
+	}
+
+	public void testVersionless() throws Exception
+	{
+		TreePage page = new TreePage();
+		page.tree.setStateVersioned(false);
+		tester.startPage(page);
+		int pageId = page.getPageId();
+
+		toggle("A");
+		tester.assertContains("\\[AA\\]");
+		assertEquals(pageId, page.getPageId());
+
+		toggle("AA");
+		tester.assertContains("\\[AAA\\]");
+		assertEquals(pageId, page.getPageId());
+
+		toggle("A");
+		assertEquals(pageId, page.getPageId());
+
+		// any other change is still versioned
+		page.dirty();
+		assertTrue(page.getPageId() > pageId);
+	}
+
+	public void testVersionlessOtherChange() throws Exception
+	{
+		TreePage page = new TreePage();
+		page.tree.setStateVersioned(false);
+		tester.startPage(page);
+		int pageId = page.getPageId();
+
+		// change another component in the same request after the state
+		page.changeOnExpand = true;
+		toggle("A");
+		tester.assertContains("\\[AA\\]");
+		tester.assertContains("changed");
+		assertTrue(page.getPageId() > pageId);
+	}
+
+	public void testVersioned() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+		int pageId = page.getPageId();
+
+		toggle("A");
+		tester.assertContains("\\[AA\\]");
+		assertTrue(page.getPageId() > pageId);
+	}
+
+	public void testFindComponent() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+
+		assertEquals("A", page.tree.findComponent(BranchItem.class, "A").getDefaultModelObject());
+		assertEquals("A", page.tree.findComponent(Node.class, "A").getDefaultModelObject());
+		assertNull(page.tree.findComponent(BranchItem.class, "AA"));
+
+		toggle("A");
+		BranchItem<?> item = page.tree.findComponent(BranchItem.class, "AA");
+		assertEquals("AA", item.getDefaultModelObject());
+		assertSame(page, item.getPage());
+
+		toggle("A");
+		assertNull(page.tree.findComponent(BranchItem.class, "AA"));
+		assertNotNull(page.tree.findComponent(BranchItem.class, "A"));
+	}
+
+	public void testFindComponentDeserialized() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+		toggle("A");
+
+		TreePage clone = (TreePage)WicketObjects.cloneObject(page);
+
+		BranchItem<?> item = clone.tree.findComponent(BranchItem.class, "AA");
+		assertEquals("AA", item.getDefaultModelObject());
+		assertSame(clone, item.getPage());
+	}
+
+	/**
+	 * Click the junction of the given node without AJAX - inside an AJAX request
+	 * a {@link WebPage} is never versioned anyway.
+	 */
+	private void toggle(final String node)
+	{
+		Page page = tester.getLastRenderedPage();
+
+		String path = page.visitChildren(Node.class, new IVisitor<Node<String>, String>()
+		{
+			public void component(Node<String> component, IVisit<String> visit)
+			{
+				if (node.equals(component.getModelObject()))
+				{
+					visit.stop(component.get("junction").getPageRelativePath());
+				}
+			}
+		});
+
+		tester.clickLink(path, false);
+	}
+
+	public static class TreePage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private NestedTree<String> tree;
+
+		private Label label;
+
+		private boolean changeOnExpand;
+
+		public TreePage()
+		{
+			tree = new NestedTree<String>("tree", new TreeProvider())
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void expand(String t)
+				{
+					super.expand(t);
+
+					if (changeOnExpand)
+					{
+						label.setDefaultModelObject("changed");
+					}
+				}
+
+				@Override
+				protected Component newContentComponent(String id, IModel<String> model)
+				{
+					return new Label(id, "[" + model.getObject() + "]");
+				}
+			};
+			add(tree);
+
+			label = new Label("label", Model.of("unchanged"));
+			add(label);
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+				Class<?> containerClass)
+		{
+			return new StringResourceStream(
+					"<html><body><div wicket:id=\"tree\"></div><span wicket:id=\"label\"></span></body></html>");
+		}
+	}
+
+	/**
+	 * Three roots, each with three children with three children each.
+	 */
+	private static class TreeProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			return children("");
+		}
+
+		public boolean hasChildren(String node)
+		{
+			return node.length() < 3;
+		}
+
+		public Iterator<? extends String> getChildren(String node)
+		{
+			return children(node);
+		}
+
+		private Iterator<String> children(String prefix)
+		{
+			List<String> children = new ArrayList<String>();
+			for (int i = 0; i < 3; i++)
+			{
+				children.add(prefix + (char)('A' + i));
+			}
+			return children.iterator();
+		}
+
+		public IModel<String> model(String node)
+		{
+			return Model.of(node);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
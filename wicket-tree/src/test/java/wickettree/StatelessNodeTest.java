@@ -0,0 +1,191 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+
+import wickettree.util.ParameterState;
+
+/**
+ * Test for {@link StatelessNode}.
+ * 
+ * @author Sven Meier
+ */
+public class StatelessNodeTest extends TestCase
+{
+
+	private WicketTester tester;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		tester = new WicketTester();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		tester.destroy();
+	}
+
+	public void test() throws Exception
+	{
+		tester.startPage(TreePage.class);
+		tester.assertRenderedPage(TreePage.class);
+		assertTrue(tester.getLastRenderedPage().isPageStateless());
+
+		tester.assertContains("\\[A\\]");
+		tester.assertContainsNot("\\[AA\\]");
+
+		tester.startPage(TreePage.class, toggle("A"));
+		assertTrue(tester.getLastRenderedPage().isPageStateless());
+		tester.assertContains("\\[AA\\]");
+		tester.assertContainsNot("\\[AAA\\]");
+
+		tester.startPage(TreePage.class, toggle("AA"));
+		tester.assertContains("\\[AAA\\]");
+
+		// collapse both again
+		tester.startPage(TreePage.class, toggle("A"));
+		tester.assertContainsNot("\\[AA\\]");
+		tester.startPage(TreePage.class, toggle("AA"));
+		tester.assertContainsNot("\\[AA\\]");
+		assertTrue(tester.getLastRenderedPage().getPageParameters().get("state").isNull());
+	}
+
+	/**
+	 * Get the parameters of the junction link of the given node, asserting
+	 * that the rendered link carries them.
+	 */
+	private PageParameters toggle(String node)
+	{
+		TreePage page = (TreePage)tester.getLastRenderedPage();
+
+		PageParameters parameters = page.state.toggle(node, page.getPageParameters());
+
+		String token = parameters.get("state").toOptionalString();
+		if (token != null)
+		{
+			tester.assertContains("state=" + token);
+		}
+
+		return parameters;
+	}
+
+	public static class TreePage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private ParameterState<String> state;
+
+		public TreePage(PageParameters parameters)
+		{
+			super(parameters);
+
+			state = new ParameterState<String>("state")
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected String key(String t)
+				{
+					return t;
+				}
+			}.read(parameters);
+
+			add(new NestedTree<String>("tree", new TreeProvider(), state.createModel())
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Component newNodeComponent(String id, IModel<String> model)
+				{
+					return new StatelessNode<String>(id, this, model);
+				}
+
+				@Override
+				protected Component newContentComponent(String id, IModel<String> model)
+				{
+					return new Label(id, "[" + model.getObject() + "]");
+				}
+			});
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+				Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><body><div wicket:id=\"tree\"></div></body></html>");
+		}
+	}
+
+	/**
+	 * Three roots, each with three children with three children each.
+	 */
+	private static class TreeProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			return children("");
+		}
+
+		public boolean hasChildren(String node)
+		{
+			return node.length() < 3;
+		}
+
+		public Iterator<? extends String> getChildren(String node)
+		{
+			return children(node);
+		}
+
+		private Iterator<String> children(String prefix)
+		{
+			List<String> children = new ArrayList<String>();
+			for (int i = 0; i < 3; i++)
+			{
+				children.add(prefix + (char)('A' + i));
+			}
+			return children.iterator();
+		}
+
+		public IModel<String> model(String node)
+		{
+			return Model.of(node);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
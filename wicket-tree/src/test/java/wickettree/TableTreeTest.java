@@ -0,0 +1,603 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+
+import wickettree.table.NavigationToolbar;
+import wickettree.table.NodeModel;
+import wickettree.table.RowSelection;
+import wickettree.table.TreeColumn;
+import wickettree.util.ProviderSubset;
+import wickettree.util.SortingTreeProvider;
+
+/**
+ * Test for {@link TableTree}.
+ * 
+ * @author Sven Meier
+ */
+public class TableTreeTest extends TestCase
+{
+
+	private WicketTester tester;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		tester = new WicketTester();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		tester.destroy();
+	}
+
+	/**
+	 * The state and the node models of a reference tree of 1110 expanded nodes
+	 * serialize more compact than their default serialized form.
+	 */
+	@SuppressWarnings("unchecked")
+	public void testSerializedSize() throws Exception
+	{
+		NumericTreeProvider provider = new NumericTreeProvider();
+		TreePage page = new TreePage(provider);
+		tester.startPage(page);
+
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+		ProviderSubset<String> state = (ProviderSubset<String>)tree.getModelObject();
+
+		DefaultSubset defaultState = new DefaultSubset(provider);
+		for (String node : state)
+		{
+			defaultState.models.put(provider.key(node), Model.of(node));
+		}
+		int stateSize = size(state);
+		int defaultStateSize = size(defaultState);
+		assertTrue(stateSize + " of " + defaultStateSize, stateSize * 10 < defaultStateSize * 8);
+
+		final ArrayList<NodeModel<String>> nodeModels = new ArrayList<NodeModel<String>>();
+		final ArrayList<DefaultNodeModel> defaultNodeModels = new ArrayList<DefaultNodeModel>();
+		tree.visitChildren(Item.class, new IVisitor<Item<?>, Void>()
+		{
+			public void component(Item<?> item, IVisit<Void> visit)
+			{
+				if (item.getModel() instanceof NodeModel<?>)
+				{
+					NodeModel<String> nodeModel = (NodeModel<String>)item.getModel();
+					nodeModels.add(nodeModel);
+					defaultNodeModels.add(new DefaultNodeModel(nodeModel));
+				}
+				visit.dontGoDeeper();
+			}
+		});
+		assertEquals(1110, nodeModels.size());
+		int nodeModelsSize = size(nodeModels);
+		int defaultNodeModelsSize = size(defaultNodeModels);
+		assertTrue(nodeModelsSize + " of " + defaultNodeModelsSize,
+				nodeModelsSize * 10 < defaultNodeModelsSize * 8);
+	}
+
+	private int size(Object object) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+
+		return bytes.size();
+	}
+
+	/**
+	 * Default serialized form of a {@link ProviderSubset}.
+	 */
+	private static class DefaultSubset implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private ITreeProvider<String> provider;
+
+		private HashMap<Object, IModel<String>> models = new HashMap<Object, IModel<String>>();
+
+		public DefaultSubset(ITreeProvider<String> provider)
+		{
+			this.provider = provider;
+		}
+	}
+
+	/**
+	 * Default serialized form of a {@link NodeModel}.
+	 */
+	private static class DefaultNodeModel implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private IModel<String> model;
+
+		private int depth;
+
+		private long branches;
+
+		private long[] overflow;
+
+		public DefaultNodeModel(NodeModel<String> nodeModel)
+		{
+			this.model = nodeModel.getWrappedModel();
+			this.depth = nodeModel.getDepth();
+			for (int i = 0; i < Math.min(depth, 64); i++)
+			{
+				if (nodeModel.getBranch(i))
+				{
+					branches |= 1l << i;
+				}
+			}
+			this.overflow = null;
+		}
+	}
+
+	/**
+	 * Rows are counted again when the state was changed directly.
+	 */
+	@SuppressWarnings("unchecked")
+	public void testModelChanged() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+		assertEquals(1110, tree.getRowCount());
+
+		tree.getModelObject().remove("0");
+		tree.modelChanged();
+		tester.startPage(page);
+
+		assertEquals(1110 - 110, tree.getRowCount());
+	}
+
+	/**
+	 * Rows are counted again and the selection is cleared when the sort
+	 * changes.
+	 */
+	@SuppressWarnings("unchecked")
+	public void testProviderChanged() throws Exception
+	{
+		TreeProvider provider = new TreeProvider();
+		TreePage page = new TreePage(provider);
+		tester.startPage(page);
+
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+		assertEquals(1110, tree.getRowCount());
+
+		provider.roots = 9;
+		tester.startPage(page);
+
+		assertEquals(1110 - 111, tree.getRowCount());
+	}
+
+	@SuppressWarnings("unchecked")
+	public void testKeepCounts() throws Exception
+	{
+		TreeProvider provider = new TreeProvider();
+		TreePage page = new TreePage(provider);
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+		tree.setKeepCounts(true);
+		tester.startPage(page);
+
+		assertEquals(1110, tree.getRowCount());
+
+		provider.roots = 9;
+		tester.startPage(page);
+
+		assertEquals(1110, tree.getRowCount());
+
+		tree.modelChanged();
+		tester.startPage(page);
+
+		assertEquals(1110 - 111, tree.getRowCount());
+	}
+
+	@SuppressWarnings("unchecked")
+	public void testSort() throws Exception
+	{
+		SortingTreeProvider<String> provider = new SortingTreeProvider<String>(
+				new TreeProvider())
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Comparator<String> getComparator(final SortParam param)
+			{
+				return new Comparator<String>()
+				{
+					public int compare(String s1, String s2)
+					{
+						return param.isAscending() ? s1.compareTo(s2) : s2.compareTo(s1);
+					}
+				};
+			}
+		};
+		provider.setSort("id", true);
+
+		TreePage page = new TreePage(provider);
+		tester.startPage(page);
+
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+		RowSelection selection = new RowSelection();
+		tree.setRowSelection(selection);
+		assertEquals(999, tree.getRow("9"));
+		selection.toggle(999);
+
+		tester.startPage(page);
+		assertTrue(selection.isSelected(999));
+
+		provider.setSort("id", false);
+		tester.startPage(page);
+
+		assertEquals(0, tree.getRow("9"));
+		assertFalse(selection.isSelected(999));
+	}
+
+	@SuppressWarnings("unchecked")
+	public void testFindComponent() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+		TreeProvider provider = (TreeProvider)tree.getProvider();
+		int models = provider.models;
+		Item<?> item = tree.findComponent(Item.class, "0.1");
+		assertEquals(12, item.getIndex());
+		// looked up by key
+		assertEquals(models, provider.models);
+		assertEquals("0.1", ((NodeModel<?>)item.getModel()).getObject());
+
+		tree.getModelObject().remove("0");
+		tree.modelChanged();
+		tester.startPage(page);
+		assertNull(tree.findComponent(Item.class, "0.1"));
+		assertEquals(1, tree.findComponent(Item.class, "1").getIndex());
+
+		page = (TreePage)WicketObjects.cloneObject(page);
+		tree = (TableTree<String>)page.get("tree");
+		assertEquals(1, tree.findComponent(Item.class, "1").getIndex());
+	}
+
+	/**
+	 * Only the rows of the branch are updated in an unpaged table.
+	 */
+	@SuppressWarnings("unchecked")
+	public void testUpdateBranchRows() throws Exception
+	{
+		TreeProvider provider = new TreeProvider();
+		ProviderSubset<String> state = new ProviderSubset<String>(provider);
+		TreePage page = new TreePage(provider, state, Integer.MAX_VALUE);
+		tester.startPage(page);
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+
+		toggle("1");
+		assertRows(tree, provider, state, 0, 20);
+		assertTreeNotUpdated(tree);
+
+		toggle("1");
+		assertRows(tree, provider, state, 0, 10);
+		assertTreeNotUpdated(tree);
+	}
+
+	/**
+	 * Rows of the branch are updated on the current page, following rows are
+	 * shifted onto or off the page.
+	 */
+	@SuppressWarnings("unchecked")
+	public void testUpdateBranchRowsPaged() throws Exception
+	{
+		TreeProvider provider = new TreeProvider();
+		ProviderSubset<String> state = new ProviderSubset<String>(provider);
+		state.add("0");
+		state.add("1");
+		state.add("2");
+		TreePage page = new TreePage(provider, state, 20);
+		tester.startPage(page);
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+		assertRows(tree, provider, state, 0, 20);
+
+		// rows shifted onto the page
+		toggle("0");
+		assertEquals(30, tree.getRowCount());
+		assertRows(tree, provider, state, 0, 20);
+		assertTreeNotUpdated(tree);
+		tester.assertComponentOnAjaxResponse(tree.visitChildren(NavigationToolbar.class,
+				new IVisitor<NavigationToolbar, Component>()
+				{
+					public void component(NavigationToolbar toolbar, IVisit<Component> visit)
+					{
+						visit.stop(toolbar.get("span"));
+					}
+				}));
+
+		// rows shifted off the page
+		toggle("0");
+		assertEquals(40, tree.getRowCount());
+		assertRows(tree, provider, state, 0, 20);
+		assertTreeNotUpdated(tree);
+
+		// rows on the second page
+		tree.setCurrentPage(1);
+		tester.startPage(page);
+		assertRows(tree, provider, state, 20, 40);
+
+		toggle("2");
+		assertEquals(30, tree.getRowCount());
+		assertRows(tree, provider, state, 20, 30);
+		assertTreeNotUpdated(tree);
+
+		toggle("2");
+		assertRows(tree, provider, state, 20, 40);
+		assertTreeNotUpdated(tree);
+	}
+
+	/**
+	 * The whole table is updated when the count of pages changes.
+	 */
+	@SuppressWarnings("unchecked")
+	public void testUpdateBranchPages() throws Exception
+	{
+		TreeProvider provider = new TreeProvider();
+		ProviderSubset<String> state = new ProviderSubset<String>(provider);
+		TreePage page = new TreePage(provider, state, 15);
+		tester.startPage(page);
+		TableTree<String> tree = (TableTree<String>)page.get("tree");
+
+		toggle("0");
+		assertEquals(2, tree.getPageCount());
+		assertRows(tree, provider, state, 0, 15);
+		tester.assertComponentOnAjaxResponse(tree);
+	}
+
+	/**
+	 * Click the junction of the given node with AJAX.
+	 */
+	private void toggle(final String node)
+	{
+		Page page = tester.getLastRenderedPage();
+
+		String path = page.visitChildren(Node.class, new IVisitor<Node<String>, String>()
+		{
+			public void component(Node<String> component, IVisit<String> visit)
+			{
+				if (node.equals(component.getModelObject()))
+				{
+					visit.stop(component.get("junction").getPageRelativePath());
+				}
+			}
+		});
+
+		tester.clickLink(path, true);
+	}
+
+	private void assertTreeNotUpdated(TableTree<String> tree)
+	{
+		assertFalse(tester.getLastResponseAsString().contains(
+				"<component id=\"" + tree.getMarkupId() + "\""));
+	}
+
+	/**
+	 * Assert the rendered rows equal the given range of all rows.
+	 */
+	private void assertRows(TableTree<String> tree, TreeProvider provider, Set<String> state,
+			int from, int to)
+	{
+		List<String> rows = new ArrayList<String>();
+		rows(provider, provider.getRoots(), state, rows);
+
+		final List<Item<?>> items = new ArrayList<Item<?>>();
+		tree.visitChildren(Item.class, new IVisitor<Item<?>, Void>()
+		{
+			public void component(Item<?> item, IVisit<Void> visit)
+			{
+				if (item.getModel() instanceof NodeModel<?>)
+				{
+					items.add(item);
+				}
+				visit.dontGoDeeper();
+			}
+		});
+		Collections.sort(items, Item.IndexComparator.getInstance());
+
+		List<Object> rendered = new ArrayList<Object>();
+		for (Item<?> item : items)
+		{
+			rendered.add(item.getDefaultModelObject());
+		}
+		assertEquals(rows.subList(from, to), rendered);
+	}
+
+	private void rows(TreeProvider provider, Iterator<? extends String> nodes,
+			Set<String> state, List<String> rows)
+	{
+		while (nodes.hasNext())
+		{
+			String node = nodes.next();
+			rows.add(node);
+			if (state.contains(node))
+			{
+				rows(provider, provider.getChildren(node), state, rows);
+			}
+		}
+	}
+
+	public static class TreePage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		public TreePage()
+		{
+			this(new TreeProvider());
+		}
+
+		public TreePage(ITreeProvider<String> provider)
+		{
+			this(provider, expanded(provider), Integer.MAX_VALUE);
+		}
+
+		public TreePage(ITreeProvider<String> provider, ProviderSubset<String> state,
+				int rowsPerPage)
+		{
+			List<IColumn<String>> columns = new ArrayList<IColumn<String>>();
+			columns.add(new TreeColumn<String>(Model.of("Tree")));
+
+			TableTree<String> tree = new TableTree<String>("tree", columns, provider,
+					rowsPerPage, state.createModel())
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Component newContentComponent(String id, IModel<String> model)
+				{
+					return new Label(id, model);
+				}
+			};
+			tree.addBottomToolbar(new NavigationToolbar(tree));
+			add(tree);
+		}
+
+		/**
+		 * All nodes with children expanded.
+		 */
+		private static ProviderSubset<String> expanded(ITreeProvider<String> provider)
+		{
+			ProviderSubset<String> state = new ProviderSubset<String>(provider);
+			for (int i = 0; i < 10; i++)
+			{
+				state.add("" + i);
+				for (int j = 0; j < 10; j++)
+				{
+					state.add(i + "." + j);
+				}
+			}
+			return state;
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+				Class<?> containerClass)
+		{
+			return new StringResourceStream(
+					"<html><body><table wicket:id=\"tree\"></table></body></html>");
+		}
+	}
+
+	/**
+	 * Ten roots, each with ten children with ten children each.
+	 */
+	private static class TreeProvider implements IKeyingTreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int roots = 10;
+
+		private int models;
+
+		public Iterator<? extends String> getRoots()
+		{
+			List<String> roots = new ArrayList<String>();
+			for (int i = 0; i < this.roots; i++)
+			{
+				roots.add("" + i);
+			}
+			return roots.iterator();
+		}
+
+		public boolean hasChildren(String node)
+		{
+			return node.length() < 5;
+		}
+
+		public Iterator<? extends String> getChildren(String node)
+		{
+			return children(node + ".");
+		}
+
+		private Iterator<String> children(String prefix)
+		{
+			List<String> children = new ArrayList<String>();
+			for (int i = 0; i < 10; i++)
+			{
+				children.add(prefix + i);
+			}
+			return children.iterator();
+		}
+
+		public IModel<String> model(String node)
+		{
+			models++;
+
+			return Model.of(node);
+		}
+
+		public Object key(String node)
+		{
+			return node;
+		}
+
+		public void detach()
+		{
+		}
+	}
+
+	/**
+	 * Keys nodes by numbers, as identifiers of a database would do.
+	 */
+	private static class NumericTreeProvider extends TreeProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Object key(String node)
+		{
+			return Long.valueOf("1" + node.replace(".", ""));
+		}
+	}
+}
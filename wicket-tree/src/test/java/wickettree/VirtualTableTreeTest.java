@@ -0,0 +1,242 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+
+import wickettree.table.NodeModel;
+import wickettree.table.SpacerToolbar;
+import wickettree.table.TreeColumn;
+
+/**
+ * Test for {@link VirtualTableTree}.
+ * 
+ * @author Sven Meier
+ */
+public class VirtualTableTreeTest extends TestCase
+{
+
+	private WicketTester tester;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		tester = new WicketTester();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		tester.destroy();
+	}
+
+	public void testSpacers() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+
+		assertRows(page.tree, 0, 20);
+		tester.assertContains("style=\"display: none;\"");
+		tester.assertContains("style=\"height: 800px;\"");
+
+		page.tree.setFirstRow(50);
+		tester.startPage(page);
+
+		assertRows(page.tree, 50, 70);
+		tester.assertContains("style=\"height: 500px;\"");
+		tester.assertContains("style=\"height: 300px;\"");
+
+		page.tree.setFirstRow(95);
+		tester.startPage(page);
+
+		assertRows(page.tree, 80, 100);
+		tester.assertContains("style=\"height: 800px;\"");
+		tester.assertContains("style=\"display: none;\"");
+	}
+
+	public void testScroll() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+
+		// down
+		scroll(page, 10);
+		assertRows(page.tree, 10, 30);
+		assertTreeNotUpdated(page.tree);
+		assertSpacersUpdated(page.tree);
+		tester.assertContains("style=\"height: 100px;\"");
+		tester.assertContains("style=\"height: 700px;\"");
+		tester.assertContains("wicketRows = \\{ first: 10, last: 30, count: 100 \\}");
+
+		// up
+		scroll(page, 5);
+		assertRows(page.tree, 5, 25);
+		assertTreeNotUpdated(page.tree);
+		assertSpacersUpdated(page.tree);
+
+		// to the end
+		scroll(page, 90);
+		assertRows(page.tree, 80, 100);
+		tester.assertComponentOnAjaxResponse(page.tree);
+	}
+
+	private void scroll(TreePage page, int first)
+	{
+		tester.getRequest().setParameter("first", "" + first);
+		tester.executeBehavior(page.tree.getBehaviors(AbstractDefaultAjaxBehavior.class)
+				.get(0));
+	}
+
+	private void assertTreeNotUpdated(VirtualTableTree<String> tree)
+	{
+		assertFalse(tester.getLastResponseAsString().contains(
+				"<component id=\"" + tree.getMarkupId() + "\""));
+	}
+
+	private void assertSpacersUpdated(VirtualTableTree<String> tree)
+	{
+		tree.visitChildren(SpacerToolbar.class, new IVisitor<SpacerToolbar, Void>()
+		{
+			public void component(SpacerToolbar spacer, IVisit<Void> visit)
+			{
+				tester.assertComponentOnAjaxResponse(spacer.get("td"));
+			}
+		});
+	}
+
+	/**
+	 * Assert the rendered rows.
+	 */
+	private void assertRows(VirtualTableTree<String> tree, int from, int to)
+	{
+		final List<Item<?>> items = new ArrayList<Item<?>>();
+		tree.visitChildren(Item.class, new IVisitor<Item<?>, Void>()
+		{
+			public void component(Item<?> item, IVisit<Void> visit)
+			{
+				if (item.getModel() instanceof NodeModel<?>)
+				{
+					items.add(item);
+				}
+				visit.dontGoDeeper();
+			}
+		});
+		Collections.sort(items, Item.IndexComparator.getInstance());
+
+		List<Object> rendered = new ArrayList<Object>();
+		for (Item<?> item : items)
+		{
+			rendered.add(item.getDefaultModelObject());
+		}
+
+		List<String> rows = new ArrayList<String>();
+		for (int row = from; row < to; row++)
+		{
+			rows.add("" + row);
+		}
+		assertEquals(rows, rendered);
+	}
+
+	public static class TreePage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private VirtualTableTree<String> tree;
+
+		public TreePage()
+		{
+			List<IColumn<String>> columns = new ArrayList<IColumn<String>>();
+			columns.add(new TreeColumn<String>(Model.of("Tree")));
+
+			tree = new VirtualTableTree<String>("tree", columns, new TreeProvider(), 20, 10)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Component newContentComponent(String id, IModel<String> model)
+				{
+					return new Label(id, model);
+				}
+			};
+			add(tree);
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+				Class<?> containerClass)
+		{
+			return new StringResourceStream(
+					"<html><body><div><table wicket:id=\"tree\"></table></div></body></html>");
+		}
+	}
+
+	/**
+	 * A hundred roots without children.
+	 */
+	private static class TreeProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			List<String> roots = new ArrayList<String>();
+			for (int i = 0; i < 100; i++)
+			{
+				roots.add("" + i);
+			}
+			return roots.iterator();
+		}
+
+		public boolean hasChildren(String node)
+		{
+			return false;
+		}
+
+		public Iterator<? extends String> getChildren(String node)
+		{
+			return Collections.<String> emptyList().iterator();
+		}
+
+		public IModel<String> model(String node)
+		{
+			return Model.of(node);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.table;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+
+/**
+ * Test for {@link FlatNodeBorder} and {@link NodeBorder}.
+ * 
+ * @author Sven Meier
+ */
+public class NodeBorderTest extends TestCase
+{
+
+	private WicketTester tester;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		tester = new WicketTester();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		tester.destroy();
+	}
+
+	public void testFlat() throws Exception
+	{
+		tester.startPage(new BorderPage(new FlatNodeBorder(new NodeModel<Object>(null,
+				new boolean[] { true, false, true }))));
+
+		tester.assertContains("class=\"custom tree-node tree-flat tree-depth-3 tree-branch-mid "
+				+ "tree-lines\"");
+		tester.assertContains("style=\"color: red; --tree-depth: 2; --tree-lines: "
+				+ "var\\(--tree-line\\) calc\\(var\\(--tree-indent\\) \\* 0\\) 0px, "
+				+ "var\\(--tree-line\\) calc\\(var\\(--tree-indent\\) \\* 2\\) 0px;\"");
+	}
+
+	public void testFlatWithoutParentalLines() throws Exception
+	{
+		tester.startPage(new BorderPage(new FlatNodeBorder(new NodeModel<Object>(null,
+				new boolean[] { false, true }))));
+
+		tester.assertContains("class=\"custom tree-node tree-flat tree-depth-2 tree-branch-mid\"");
+		tester.assertContains("style=\"color: red; --tree-depth: 1;\"");
+	}
+
+	public void testNested() throws Exception
+	{
+		tester.startPage(new BorderPage(new NodeBorder(new NodeModel<Object>(null, new boolean[] {
+				true, false }))));
+
+		tester.assertContains("class=\"custom tree-node\"");
+		tester.assertContains("<div class=\"tree-branch tree-branch-mid\">"
+				+ "<div class=\"tree-subtree\"><div class=\"tree-branch tree-branch-last\">");
+	}
+
+	public static class BorderPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		public BorderPage(Behavior border)
+		{
+			add(new WebMarkupContainer("node").add(border));
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+				Class<?> containerClass)
+		{
+			return new StringResourceStream(
+					"<html><body><div wicket:id=\"node\" class=\"custom\" style=\"color: red;\"></div></body></html>");
+		}
+	}
+}
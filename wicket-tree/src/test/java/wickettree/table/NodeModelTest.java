@@ -15,6 +15,13 @@
  */
 package wickettree.table;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 import org.apache.wicket.model.IModel;
@@ -41,6 +48,115 @@ public class NodeModelTest extends TestCase
 				false })));
 	}
 
+	public void testBranches() throws Exception
+	{
+		Random random = new Random(0);
+
+		boolean[] branches = new boolean[200];
+		NodeModel<String> parent = new NodeModel<String>(null, new boolean[0]);
+		for (int i = 0; i < branches.length; i++)
+		{
+			branches[i] = random.nextBoolean();
+
+			NodeModel<String> child = new NodeModel<String>(new StringModel("A"), parent,
+					branches[i]);
+			assertEquals(i + 1, child.getDepth());
+			for (int b = 0; b <= i; b++)
+			{
+				assertEquals(branches[b], child.getBranch(b));
+			}
+
+			boolean[] prefix = new boolean[i + 1];
+			System.arraycopy(branches, 0, prefix, 0, prefix.length);
+			assertTrue(Arrays.equals(prefix, child.getBranches()));
+			assertTrue(child.equals(new NodeModel<String>(new StringModel("A"), prefix)));
+
+			parent = child;
+		}
+
+		try
+		{
+			parent.getBranch(branches.length);
+			fail();
+		}
+		catch (IndexOutOfBoundsException expected)
+		{
+		}
+	}
+
+	public void testSerialization() throws Exception
+	{
+		Random random = new Random(0);
+
+		NodeModel<String> parent = new NodeModel<String>(null, new boolean[0]);
+		for (int i = 0; i < 200; i++)
+		{
+			NodeModel<String> child = new NodeModel<String>(new SerializableModel(), parent,
+					random.nextBoolean());
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(child);
+			out.writeObject(child);
+			out.close();
+
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes
+					.toByteArray()));
+			NodeModel<?> copy = (NodeModel<?>)in.readObject();
+			assertEquals(child.getDepth(), copy.getDepth());
+			assertTrue(Arrays.equals(child.getBranches(), copy.getBranches()));
+
+			parent = child;
+		}
+	}
+
+	public void testSerializedSize() throws Exception
+	{
+		NodeModel<String> parent = new NodeModel<String>(null, new boolean[] { true, false,
+				true });
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(new NodeModel<String>(new SerializableModel(), parent, true));
+		out.flush();
+		int first = bytes.size();
+		out.writeObject(new NodeModel<String>(new SerializableModel(), parent, false));
+		out.close();
+
+		// handles and the wrapped model plus depth and packed branches
+		assertTrue(bytes.size() - first < 20);
+	}
+
+	private static class SerializableModel implements IModel<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public String getObject()
+		{
+			return null;
+		}
+
+		public void setObject(String object)
+		{
+		}
+
+		public void detach()
+		{
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof SerializableModel;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 0;
+		}
+	}
+
 	private class StringModel implements IModel<String>
 	{
 
@@ -75,5 +191,11 @@ public class NodeModelTest extends TestCase
 
 			return false;
 		}
+
+		@Override
+		public int hashCode()
+		{
+			return string.hashCode();
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test for {@link RowSelection}.
+ */
+public class RowSelectionTest extends TestCase
+{
+	public void test() throws Exception
+	{
+		RowSelection selection = new RowSelection();
+
+		selection.toggle(3);
+		assertEquals(3, selection.selectRange(6));
+		assertEquals(4, selection.getCount());
+		assertEquals(1, selection.getIntervalCount());
+		assertFalse(selection.isSelected(2));
+		assertTrue(selection.isSelected(3));
+		assertTrue(selection.isSelected(6));
+		assertFalse(selection.isSelected(7));
+
+		selection.toggle(5);
+		assertEquals(2, selection.getIntervalCount());
+		assertFalse(selection.isSelected(5));
+
+		// collapsed rows
+		selection.delete(4, 2);
+		assertEquals(1, selection.getIntervalCount());
+		assertTrue(selection.isSelected(4));
+		assertEquals(-1, selection.getAnchor());
+
+		// expanded rows
+		selection.insert(4, 10);
+		assertTrue(selection.isSelected(3));
+		assertFalse(selection.isSelected(4));
+		assertFalse(selection.isSelected(13));
+		assertTrue(selection.isSelected(14));
+		assertEquals(2, selection.getCount());
+	}
+
+	public void testRandom() throws Exception
+	{
+		RowSelection selection = new RowSelection();
+		List<Boolean> expected = new ArrayList<Boolean>();
+		for (int i = 0; i < 200; i++)
+		{
+			expected.add(Boolean.FALSE);
+		}
+
+		Random random = new Random(0);
+		for (int i = 0; i < 10000; i++)
+		{
+			int row = random.nextInt(100);
+			int count = random.nextInt(20);
+
+			switch (random.nextInt(4))
+			{
+				case 0 :
+					boolean selected = random.nextBoolean();
+					selection.set(row, row + count, selected);
+					for (int r = row; r < row + count; r++)
+					{
+						expected.set(r, selected);
+					}
+					break;
+				case 1 :
+					selection.toggle(row);
+					expected.set(row, !expected.get(row));
+					break;
+				case 2 :
+					selection.insert(row, count);
+					for (int r = 0; r < count; r++)
+					{
+						expected.add(row, Boolean.FALSE);
+						expected.remove(expected.size() - 1);
+					}
+					break;
+				case 3 :
+					selection.delete(row, count);
+					for (int r = 0; r < count; r++)
+					{
+						expected.remove(row);
+						expected.add(Boolean.FALSE);
+					}
+					break;
+			}
+
+			// forget rows shifted out of range
+			selection.set(150, 1000, false);
+			for (int r = 150; r < 200; r++)
+			{
+				expected.set(r, false);
+			}
+
+			for (int r = 0; r < 150; r++)
+			{
+				assertEquals(expected.get(r).booleanValue(), selection.isSelected(r));
+			}
+		}
+	}
+}
@@ -17,8 +17,10 @@ package wickettree.table;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
@@ -79,6 +81,85 @@ public class TreeDataProviderTest extends TestCase
 		assertFalse(iterator.hasNext());
 	}
 
+	public void testIterator() throws Exception
+	{
+		TreeDataProvider<String> provider = new TreeDataProvider<String>(new TestProvider())
+		{
+			@Override
+			protected boolean iterateChildren(String object)
+			{
+				return !object.startsWith("B") && !object.equals("CB");
+			}
+		};
+
+		List<String> rows = new ArrayList<String>();
+		Iterator<? extends String> iterator = provider.iterator(0, Integer.MAX_VALUE);
+		while (iterator.hasNext())
+		{
+			rows.add(iterator.next());
+		}
+		assertEquals(provider.size(), rows.size());
+
+		for (int first = 0; first < rows.size(); first++)
+		{
+			iterator = provider.iterator(first, Integer.MAX_VALUE);
+			for (int row = first; row < rows.size(); row++)
+			{
+				String next = iterator.next();
+				assertEquals(rows.get(row), next);
+				assertEquals(next.length(), provider.model(next).getDepth());
+			}
+			assertFalse(iterator.hasNext());
+		}
+
+		for (int row = 0; row < rows.size(); row++)
+		{
+			assertEquals(row, provider.getRow(rows.get(row)));
+		}
+		assertEquals(-1, provider.getRow("BA"));
+	}
+
+	public void testUpdate() throws Exception
+	{
+		final Set<String> collapsed = new HashSet<String>();
+		collapsed.add("B");
+
+		TreeDataProvider<String> provider = new TreeDataProvider<String>(new TestProvider())
+		{
+			@Override
+			protected boolean iterateChildren(String object)
+			{
+				return !collapsed.contains(object);
+			}
+		};
+
+		assertEquals(3 + 2 * (3 + 3 * 3), provider.size());
+
+		collapsed.add("CA");
+		provider.update("CA");
+		assertEquals(3 + 2 * (3 + 3 * 3) - 3, provider.size());
+
+		collapsed.add("C");
+		provider.update("C");
+		assertEquals(3 + (3 + 3 * 3), provider.size());
+
+		// not visible
+		collapsed.remove("CA");
+		provider.update("CA");
+		assertEquals(3 + (3 + 3 * 3), provider.size());
+
+		collapsed.remove("C");
+		provider.update("C");
+		assertEquals(3 + 2 * (3 + 3 * 3), provider.size());
+
+		provider.detach();
+		assertEquals(3 + 2 * (3 + 3 * 3), provider.size());
+
+		collapsed.clear();
+		provider.update(null);
+		assertEquals(3 + 3 * (3 + 3 * 3), provider.size());
+	}
+
 	private static class TestProvider implements ITreeProvider<String>
 	{
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+import wickettree.ITreeProvider;
+
+/**
+ * Test for {@link AsynchronousTreeProvider}.
+ */
+public class AsynchronousTreeProviderTest extends TestCase
+{
+	private int loads;
+
+	private int detaches;
+
+	private InlineExecutor executor = new InlineExecutor(true);
+
+	private AsynchronousTreeProvider<String> provider = new AsynchronousTreeProvider<String>(
+			new SlowProvider())
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected ExecutorService getExecutor()
+		{
+			return executor;
+		}
+
+		@Override
+		protected int getMaxLoaded()
+		{
+			return 2;
+		}
+	};
+
+	public void test() throws Exception
+	{
+		assertFalse(provider.isLoading("A"));
+		assertFalse(provider.getChildren("A").hasNext());
+		assertTrue(provider.isLoading("A"));
+		assertFalse(provider.getChildren("A").hasNext());
+
+		executor.run();
+
+		Iterator<? extends String> children = provider.getChildren("A");
+		assertEquals("AA", children.next());
+		assertEquals("AB", children.next());
+		assertFalse(children.hasNext());
+		assertFalse(provider.isLoading("A"));
+		assertEquals(1, loads);
+
+		provider.detach();
+
+		// kept
+		assertTrue(provider.getChildren("A").hasNext());
+		assertEquals(1, loads);
+
+		// loaded again
+		provider.reset("A");
+		assertFalse(provider.getChildren("A").hasNext());
+		executor.run();
+		assertTrue(provider.getChildren("A").hasNext());
+		assertEquals(2, loads);
+	}
+
+	public void testBounded() throws Exception
+	{
+		for (String node : Arrays.asList("A", "B", "C"))
+		{
+			provider.getChildren(node);
+			executor.run();
+			assertTrue(provider.getChildren(node).hasNext());
+		}
+		assertEquals(3, loads);
+
+		assertTrue(provider.getChildren("C").hasNext());
+		assertTrue(provider.getChildren("B").hasNext());
+		assertFalse(provider.getChildren("A").hasNext());
+	}
+
+	public void testLoader() throws Exception
+	{
+		AsynchronousTreeProvider<String> provider = new AsynchronousTreeProvider<String>(
+				new RequestProvider(), new SlowProvider())
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected ExecutorService getExecutor()
+			{
+				return executor;
+			}
+		};
+
+		assertFalse(provider.getChildren("A").hasNext());
+		executor.run();
+		assertEquals(1, loads);
+		assertEquals(1, detaches);
+
+		Iterator<? extends String> children = provider.getChildren("A");
+		assertEquals("AA", children.next());
+		assertEquals("AB", children.next());
+
+		// known from loading
+		assertTrue(provider.hasChildren("AA"));
+		assertTrue(provider.hasChildren("AB"));
+
+		provider.reset("A");
+		try
+		{
+			provider.hasChildren("AA");
+			fail();
+		}
+		catch (UnsupportedOperationException expected)
+		{
+		}
+	}
+
+	/**
+	 * Provider for the request thread only.
+	 */
+	private class RequestProvider extends SlowProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean hasChildren(String object)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Iterator<? extends String> getChildren(String object)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private class SlowProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			return Arrays.asList("A").iterator();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			return true;
+		}
+
+		public Iterator<? extends String> getChildren(String object)
+		{
+			loads++;
+
+			return Arrays.asList(object + "A", object + "B").iterator();
+		}
+
+		public IModel<String> model(String object)
+		{
+			return Model.of(object);
+		}
+
+		public void detach()
+		{
+			detaches++;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.lang.WicketObjects;
+
+import wickettree.IKeyingTreeProvider;
+
+/**
+ * Test for {@link BreadthFirstExpansion}.
+ */
+public class BreadthFirstExpansionTest extends TestCase
+{
+	public void test() throws Exception
+	{
+		BreadthFirstExpansion<String> expansion = new BreadthFirstExpansion<String>(
+				new StringProvider(), 3);
+		assertFalse(expansion.isRunning());
+
+		expansion.start();
+		assertTrue(expansion.isRunning());
+
+		// A, B
+		assertEquals(Arrays.asList("A", "B"), expansion.next());
+		assertTrue(expansion.isRunning());
+
+		// AA, AB, BA, BB
+		assertEquals(Arrays.asList("AA", "AB"), expansion.next());
+		assertTrue(expansion.isRunning());
+
+		assertEquals(Arrays.asList("BA", "BB"), expansion.next());
+		assertFalse(expansion.isRunning());
+	}
+
+	public void testStart() throws Exception
+	{
+		BreadthFirstExpansion<String> expansion = new BreadthFirstExpansion<String>(
+				new StringProvider(), 100);
+
+		expansion.start("B");
+		assertEquals(Arrays.asList("B", "BA", "BB"), expansion.next());
+		assertFalse(expansion.isRunning());
+
+		expansion.start("BBB");
+		assertFalse(expansion.isRunning());
+	}
+
+	public void testBudgetWithinGroup() throws Exception
+	{
+		BreadthFirstExpansion<String> expansion = new BreadthFirstExpansion<String>(
+				new StringProvider(), 1);
+
+		expansion.start();
+		assertEquals(Arrays.asList("A"), expansion.next());
+		assertEquals(Arrays.asList("B"), expansion.next());
+		assertEquals(Arrays.asList("AA"), expansion.next());
+	}
+
+	/**
+	 * Pending nodes are kept as keys only.
+	 */
+	@SuppressWarnings("unchecked")
+	public void testSerialized() throws Exception
+	{
+		BreadthFirstExpansion<String> expansion = new BreadthFirstExpansion<String>(
+				new StringProvider(), 3);
+
+		expansion.start();
+		assertEquals(Arrays.asList("A", "B"), expansion.next());
+
+		expansion = (BreadthFirstExpansion<String>)WicketObjects.cloneObject(expansion);
+		assertEquals(Arrays.asList("AA", "AB"), expansion.next());
+		assertEquals(Arrays.asList("BA", "BB"), expansion.next());
+		assertFalse(expansion.isRunning());
+	}
+
+	private static class StringProvider implements IKeyingTreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			return Arrays.asList("A", "B").iterator();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			return object.length() < 3;
+		}
+
+		public Iterator<? extends String> getChildren(String object)
+		{
+			List<String> list = new ArrayList<String>();
+			list.add(object + "A");
+			list.add(object + "B");
+			return list.iterator();
+		}
+
+		public IModel<String> model(String object)
+		{
+			return Model.of(object);
+		}
+
+		public Object key(String object)
+		{
+			return object;
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+
+import wickettree.IKeyingTreeProvider;
+import wickettree.ITreeProvider;
+
+/**
+ * Test for {@link CachingTreeProvider}.
+ */
+public class CachingTreeProviderTest extends TestCase
+{
+	private int roots;
+
+	private int hasChildren;
+
+	private int children;
+
+	private int models;
+
+	private int loads;
+
+	public void test() throws Exception
+	{
+		CachingTreeProvider<String> provider = new CachingTreeProvider<String>(
+				new CountingProvider());
+
+		for (int i = 0; i < 2; i++)
+		{
+			Iterator<? extends String> iterator = provider.getRoots();
+			assertEquals("A", iterator.next());
+			assertEquals("B", iterator.next());
+			assertFalse(iterator.hasNext());
+
+			assertTrue(provider.hasChildren("A"));
+
+			iterator = provider.getChildren("A");
+			assertEquals("AA", iterator.next());
+			assertEquals("AB", iterator.next());
+			assertFalse(iterator.hasNext());
+		}
+		assertEquals(1, roots);
+		assertEquals(1, hasChildren);
+		assertEquals(1, children);
+
+		provider.detach();
+
+		provider.getRoots();
+		provider.hasChildren("A");
+		provider.getChildren("A");
+		assertEquals(2, roots);
+		assertEquals(2, hasChildren);
+		assertEquals(2, children);
+
+		provider.getChildren(Arrays.asList("A", "B"));
+		assertEquals(3, children);
+	}
+
+	public void testModel() throws Exception
+	{
+		CachingTreeProvider<String> provider = new CachingTreeProvider<String>(
+				new CountingProvider());
+
+		IModel<String> model = provider.model("A");
+		assertEquals("A", model.getObject());
+
+		// eager detachment has no effect
+		model.detach();
+		assertSame(model, provider.model("A"));
+		assertEquals("A", model.getObject());
+		assertEquals(1, models);
+		assertEquals(0, loads);
+
+		provider.detach();
+
+		IModel<String> other = provider.model("A");
+		assertNotSame(model, other);
+		assertEquals(model, other);
+		assertEquals(model.hashCode(), other.hashCode());
+
+		// detached with provider
+		assertEquals("A", model.getObject());
+		assertEquals(1, loads);
+		model.detach();
+		assertEquals("A", model.getObject());
+		assertEquals(2, loads);
+	}
+
+	public void testKeying() throws Exception
+	{
+		assertFalse(CachingTreeProvider.of(new CountingProvider()) instanceof IKeyingTreeProvider<?>);
+
+		IKeyingTreeProvider<String> provider = (IKeyingTreeProvider<String>)CachingTreeProvider
+				.of(new KeyingProvider());
+
+		assertEquals("A", provider.key("A"));
+		assertEquals(0, models);
+	}
+
+	private class KeyingProvider extends CountingProvider implements IKeyingTreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Object key(String object)
+		{
+			return object;
+		}
+	}
+
+	private class CountingProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			roots++;
+
+			return Arrays.asList("A", "B").iterator();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			hasChildren++;
+
+			return object.length() < 2;
+		}
+
+		public Iterator<? extends String> getChildren(String object)
+		{
+			children++;
+
+			List<String> list = new ArrayList<String>();
+			list.add(object + "A");
+			list.add(object + "B");
+			return list.iterator();
+		}
+
+		public IModel<String> model(final String object)
+		{
+			models++;
+
+			return new LoadableDetachableModel<String>(object)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected String load()
+				{
+					loads++;
+
+					return object;
+				}
+
+				@Override
+				public boolean equals(Object obj)
+				{
+					return obj instanceof LoadableDetachableModel<?> &&
+						object.equals(((LoadableDetachableModel<?>)obj).getObject());
+				}
+
+				@Override
+				public int hashCode()
+				{
+					return object.hashCode();
+				}
+			};
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+import wickettree.IParentTreeProvider;
+import wickettree.util.CheckedIndex.Checked;
+
+/**
+ * Test for {@link CheckedIndex}.
+ */
+public class CheckedIndexTest extends TestCase
+{
+	private CheckedIndex<String> index = new CheckedIndex<String>(new PathProvider());
+
+	public void test() throws Exception
+	{
+		assertEquals(Checked.NONE, index.getChecked("A.B"));
+
+		assertEquals(Arrays.asList("A.A", "A"), index.check("A.A.A", true));
+		assertEquals(Checked.ALL, index.getChecked("A.A.A"));
+		assertEquals(Checked.ALL, index.getChecked("A.A.A.B"));
+		assertEquals(Checked.SOME, index.getChecked("A.A"));
+		assertEquals(Checked.SOME, index.getChecked("A"));
+		assertEquals(Checked.NONE, index.getChecked("A.A.B"));
+		assertEquals(Checked.NONE, index.getChecked("B"));
+
+		assertEquals(Arrays.asList("A.A"), index.check("A.A.B", true));
+		assertEquals(Checked.ALL, index.getChecked("A.A"));
+		assertEquals(Checked.SOME, index.getChecked("A"));
+
+		assertEquals(Arrays.asList("A.A", "A.A.B"), index.check("A.A.B.A", false));
+		assertEquals(Checked.SOME, index.getChecked("A.A"));
+		assertEquals(Checked.SOME, index.getChecked("A.A.B"));
+		assertEquals(Checked.ALL, index.getChecked("A.A.B.B"));
+		assertEquals(Checked.NONE, index.getChecked("A.A.B.A"));
+		assertEquals(Checked.SOME, index.getChecked("A"));
+
+		assertEquals(Arrays.asList(), index.check("A", true));
+		assertEquals(Checked.ALL, index.getChecked("A.A.B.A"));
+
+		assertEquals(Arrays.asList("A", "A.B", "A.B.A"), index.check("A.B.A.A", false));
+		assertEquals(Checked.SOME, index.getChecked("A"));
+		assertEquals(Checked.SOME, index.getChecked("A.B"));
+		assertEquals(Checked.SOME, index.getChecked("A.B.A"));
+		assertEquals(Checked.ALL, index.getChecked("A.B.B"));
+		assertEquals(Checked.ALL, index.getChecked("A.B.A.B"));
+
+		assertEquals(Arrays.asList("A.B.A", "A.B", "A"), index.check("A.B.A.A", true));
+		assertEquals(Checked.ALL, index.getChecked("A"));
+
+		assertEquals(Arrays.asList(), index.check("A", false));
+		assertEquals(Checked.NONE, index.getChecked("A.B.A.A"));
+		assertEquals(Checked.NONE, index.getChecked("A"));
+	}
+
+	/**
+	 * Splitting a checked subtree below a partially checked node.
+	 */
+	public void testSplitBelowPartial() throws Exception
+	{
+		assertEquals(Arrays.asList("A"), index.check("A.A", true));
+
+		assertEquals(Arrays.asList("A.A"), index.check("A.A.A", false));
+		assertEquals(Checked.SOME, index.getChecked("A.A"));
+		assertEquals(Checked.SOME, index.getChecked("A"));
+
+		assertEquals(Arrays.asList("A.A"), index.check("A.A.A", true));
+		assertEquals(Checked.ALL, index.getChecked("A.A"));
+		assertEquals(Checked.SOME, index.getChecked("A"));
+		assertEquals(Checked.NONE, index.getChecked("A.B"));
+	}
+
+	/**
+	 * Binary tree with 4 levels.
+	 */
+	private class PathProvider implements IParentTreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public String getParent(String object)
+		{
+			int index = object.lastIndexOf('.');
+			return index == -1 ? null : object.substring(0, index);
+		}
+
+		public Iterator<? extends String> getRoots()
+		{
+			return Arrays.asList("A", "B").iterator();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			return object.length() < 7;
+		}
+
+		public Iterator<? extends String> getChildren(String object)
+		{
+			List<String> children = new ArrayList<String>();
+			if (hasChildren(object))
+			{
+				children.add(object + ".A");
+				children.add(object + ".B");
+			}
+			return children.iterator();
+		}
+
+		public IModel<String> model(String object)
+		{
+			return Model.of(object);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+import wickettree.IBatchTreeProvider;
+
+/**
+ * Test for {@link ChildrenBatch}.
+ */
+public class ChildrenBatchTest extends TestCase
+{
+	private int batches;
+
+	private int singles;
+
+	public void test() throws Exception
+	{
+		ChildrenBatch<String> batch = new ChildrenBatch<String>(new BatchProvider())
+		{
+			@Override
+			protected boolean isExpanded(String t)
+			{
+				return !t.startsWith("B") && t.length() < 3;
+			}
+		};
+
+		Iterator<? extends String> roots = batch.fetch(Arrays.asList("A", "B", "C").iterator(),
+				Integer.MAX_VALUE);
+		assertEquals("A", roots.next());
+		assertEquals("B", roots.next());
+		assertEquals("C", roots.next());
+		assertFalse(roots.hasNext());
+
+		// one batch per level
+		assertEquals(2, batches);
+
+		Iterator<? extends String> children = batch.getChildren("CA");
+		assertEquals("CAA", children.next());
+		assertEquals("CAB", children.next());
+		assertFalse(children.hasNext());
+		assertEquals(0, singles);
+
+		// collapsed
+		batch.getChildren("B");
+		assertEquals(1, singles);
+
+		batch.detach();
+
+		batch.getChildren("CA");
+		assertEquals(2, singles);
+	}
+
+	private class BatchProvider implements IBatchTreeProvider<String>
+	{
+
+		public Iterator<? extends String> getRoots()
+		{
+			return Arrays.asList("A", "B", "C").iterator();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			return object.length() < 3;
+		}
+
+		public Iterator<? extends String> getChildren(String object)
+		{
+			singles++;
+
+			return children(object).iterator();
+		}
+
+		public List<Iterator<? extends String>> getChildren(List<String> objects)
+		{
+			batches++;
+
+			List<Iterator<? extends String>> children = new ArrayList<Iterator<? extends String>>();
+			for (String object : objects)
+			{
+				children.add(children(object).iterator());
+			}
+			return children;
+		}
+
+		private List<String> children(String object)
+		{
+			List<String> children = new ArrayList<String>();
+			if (hasChildren(object))
+			{
+				children.add(object + "A");
+				children.add(object + "B");
+			}
+			return children;
+		}
+
+		public IModel<String> model(String object)
+		{
+			return Model.of(object);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
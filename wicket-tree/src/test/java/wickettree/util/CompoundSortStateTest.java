@@ -0,0 +1,72 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+
+/**
+ * Test for {@link CompoundSortState}.
+ */
+public class CompoundSortStateTest extends TestCase
+{
+	public void test() throws Exception
+	{
+		CompoundSortState state = new CompoundSortState(2);
+
+		state.setPropertySortOrder("name", SortOrder.ASCENDING);
+		state.setPropertySortOrder("type", SortOrder.DESCENDING);
+		assertEquals(Arrays.asList(new SortParam("type", false), new SortParam("name", true)),
+				state.getSorts());
+		assertEquals(SortOrder.ASCENDING, state.getPropertySortOrder("name"));
+		assertEquals(SortOrder.DESCENDING, state.getPropertySortOrder("type"));
+		assertEquals(SortOrder.NONE, state.getPropertySortOrder("size"));
+
+		state.setPropertySortOrder("name", SortOrder.DESCENDING);
+		assertEquals(Arrays.asList(new SortParam("name", false), new SortParam("type", false)),
+				state.getSorts());
+
+		state.setPropertySortOrder("size", SortOrder.ASCENDING);
+		assertEquals(Arrays.asList(new SortParam("size", true), new SortParam("name", false)),
+				state.getSorts());
+
+		state.setPropertySortOrder("size", SortOrder.NONE);
+		assertEquals(Arrays.asList(new SortParam("name", false)), state.getSorts());
+
+		state.setSorts(Arrays.asList(new SortParam("a", true), new SortParam("b", true),
+				new SortParam("c", true)));
+		assertEquals(Arrays.asList(new SortParam("a", true), new SortParam("b", true)), state
+				.getSorts());
+	}
+
+	public void testSetSorts() throws Exception
+	{
+		CompoundSortState state = new CompoundSortState();
+		state.setPropertySortOrder("name", SortOrder.ASCENDING);
+		state.setPropertySortOrder("type", SortOrder.DESCENDING);
+
+		state.setSorts(state.getSorts());
+		assertEquals(Arrays.asList(new SortParam("type", false), new SortParam("name", true)),
+				state.getSorts());
+		assertEquals(0, state.getRank("type"));
+		assertEquals(1, state.getRank("name"));
+		assertEquals(-1, state.getRank("size"));
+	}
+}
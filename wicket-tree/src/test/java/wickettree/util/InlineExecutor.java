@@ -0,0 +1,92 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor running its tasks in the calling thread, or queueing them until
+ * {@link #run()} if stalled.
+ */
+public class InlineExecutor extends AbstractExecutorService
+{
+	private boolean stalled;
+
+	private List<Runnable> queued = new ArrayList<Runnable>();
+
+	public InlineExecutor()
+	{
+		this(false);
+	}
+
+	public InlineExecutor(boolean stalled)
+	{
+		this.stalled = stalled;
+	}
+
+	public void execute(Runnable command)
+	{
+		if (stalled)
+		{
+			queued.add(command);
+		}
+		else
+		{
+			command.run();
+		}
+	}
+
+	/**
+	 * Run all queued tasks.
+	 */
+	public void run()
+	{
+		List<Runnable> runnables = new ArrayList<Runnable>(queued);
+		queued.clear();
+
+		for (Runnable runnable : runnables)
+		{
+			runnable.run();
+		}
+	}
+
+	public void shutdown()
+	{
+	}
+
+	public List<Runnable> shutdownNow()
+	{
+		return new ArrayList<Runnable>(queued);
+	}
+
+	public boolean isShutdown()
+	{
+		return false;
+	}
+
+	public boolean isTerminated()
+	{
+		return false;
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+	{
+		return true;
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Duration;
+
+import wickettree.ITreeProvider;
+import wickettree.NestedTree;
+import wickettree.TableTree;
+import wickettree.table.TreeColumn;
+
+/**
+ * Test for {@link IntermediateTreeProvider}.
+ * 
+ * @author Sven Meier
+ */
+public class IntermediateTreeProviderTest extends TestCase
+{
+
+	/**
+	 * Are the children of the backend loaded.
+	 */
+	private static boolean loaded;
+
+	private WicketTester tester;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		loaded = false;
+
+		tester = new WicketTester();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		tester.destroy();
+	}
+
+	public void testPending() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+
+		tester.assertContains("WicketTree.Intermediate.pending\\(.*, 1000, 30000\\);");
+		assertEquals(1, page.getBehaviors(AbstractDefaultAjaxBehavior.class).size());
+		assertTrue(page.provider.hasIntermediateChildren("A"));
+		assertFalse(page.provider.hasIntermediateChildren("B"));
+		assertEquals(0, count(">AA<"));
+	}
+
+	public void testUpdate() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+
+		loaded = true;
+		update(page, "token", false);
+
+		// branch of nested tree and rows of table tree
+		assertEquals(2, count(">AA<"));
+		assertEquals(2, count(">AB<"));
+		assertFalse(page.provider.hasIntermediateChildren("A"));
+	}
+
+	public void testPollTimeout() throws Exception
+	{
+		TreePage page = new TreePage();
+		page.provider.setPollTimeout(Duration.seconds(5));
+		tester.startPage(page);
+
+		tester.assertContains("WicketTree.Intermediate.pending\\(.*, 1000, 5000\\);");
+	}
+
+	public void testUpdateOtherToken() throws Exception
+	{
+		TreePage page = new TreePage();
+		tester.startPage(page);
+
+		loaded = true;
+		update(page, "other", true);
+
+		assertEquals(0, count(">AA<"));
+		assertTrue(page.provider.hasIntermediateChildren("A"));
+	}
+
+	private void update(TreePage page, String tokens, boolean timeout)
+	{
+		tester.getRequest().setParameter("tokens", tokens);
+		tester.getRequest().setParameter("timeout", "" + timeout);
+		tester.executeBehavior(page.getBehaviors(AbstractDefaultAjaxBehavior.class).get(0));
+	}
+
+	private int count(String string)
+	{
+		String response = tester.getLastResponseAsString();
+
+		int count = 0;
+		int index = response.indexOf(string);
+		while (index != -1)
+		{
+			count++;
+			index = response.indexOf(string, index + 1);
+		}
+		return count;
+	}
+
+	public static class TreePage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private IntermediateTreeProvider<String> provider;
+
+		public TreePage()
+		{
+			provider = new IntermediateTreeProvider<String>(new TreeProvider(), Duration
+					.seconds(1));
+
+			ProviderSubset<String> nestedState = new ProviderSubset<String>(provider);
+			nestedState.add("A");
+			add(new NestedTree<String>("nested", provider, nestedState.createModel())
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Component newContentComponent(String id, IModel<String> model)
+				{
+					return new Label(id, model);
+				}
+			});
+
+			List<IColumn<String>> columns = new ArrayList<IColumn<String>>();
+			columns.add(new TreeColumn<String>(Model.of("Tree")));
+
+			ProviderSubset<String> tableState = new ProviderSubset<String>(provider);
+			tableState.add("A");
+			add(new TableTree<String>("table", columns, provider, Integer.MAX_VALUE, tableState
+					.createModel())
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Component newContentComponent(String id, IModel<String> model)
+				{
+					return new Label(id, model);
+				}
+			});
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+				Class<?> containerClass)
+		{
+			return new StringResourceStream(
+					"<html><body><div wicket:id=\"nested\"></div><table wicket:id=\"table\"></table></body></html>");
+		}
+	}
+
+	/**
+	 * Two roots, children of A are intermediate until loaded.
+	 */
+	private static class TreeProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			return children("");
+		}
+
+		public boolean hasChildren(String node)
+		{
+			return node.length() < 2;
+		}
+
+		public Iterator<? extends String> getChildren(String node)
+		{
+			if ("A".equals(node) && !loaded)
+			{
+				return IntermediateTreeProvider.intermediate(new ArrayList<String>().iterator(),
+						"token");
+			}
+			return children(node);
+		}
+
+		private Iterator<String> children(String prefix)
+		{
+			List<String> children = new ArrayList<String>();
+			children.add(prefix + "A");
+			children.add(prefix + "B");
+			return children.iterator();
+		}
+
+		public IModel<String> model(String node)
+		{
+			return Model.of(node);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Test for {@link KeyingSet}.
+ * 
+ * @author Sven Meier
+ */
+public class KeyingSetTest extends TestCase
+{
+	public void test() throws Exception
+	{
+		KeyingSet<String> set = new LengthSet();
+
+		assertTrue(set.add("A"));
+		assertFalse(set.add("B"));
+		assertTrue(set.add("AA"));
+		assertEquals(2, set.size());
+
+		assertTrue(set.contains("C"));
+		assertFalse(set.contains("CCC"));
+
+		assertTrue(set.remove("AA"));
+		assertFalse(set.contains("AA"));
+	}
+
+	public void testSerialization() throws Exception
+	{
+		KeyingSet<String> set = new LengthSet();
+		StringBuilder string = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+		{
+			set.add(string.toString());
+			string.append('A');
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(set);
+		out.close();
+
+		// at most 3 bytes per key plus class descriptors
+		assertTrue(bytes.size() < 1000 * 3 + 500);
+
+		@SuppressWarnings("unchecked")
+		KeyingSet<String> copy = (KeyingSet<String>)new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(1000, copy.size());
+		assertTrue(copy.contains(""));
+		assertTrue(copy.contains(string.substring(1)));
+		assertFalse(copy.contains(string.toString()));
+	}
+
+	private static class LengthSet extends KeyingSet<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected Object key(String t)
+		{
+			return t.length();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Test for {@link LongKeyingSet}.
+ */
+public class LongKeyingSetTest extends TestCase
+{
+	public void test() throws Exception
+	{
+		LongKeyingSet<Long> set = new IdSet();
+		Set<Long> expected = new HashSet<Long>();
+
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; i++)
+		{
+			Long key = Long.valueOf(random.nextInt(1000) - 100);
+			if (random.nextInt(3) == 0)
+			{
+				assertEquals(expected.remove(key), set.remove(key));
+			}
+			else
+			{
+				assertEquals(expected.add(key), set.add(key));
+			}
+			assertEquals(expected.size(), set.size());
+		}
+
+		for (long key = -100; key < 900; key++)
+		{
+			assertEquals(expected.contains(key), set.contains(key));
+		}
+		assertFalse(set.contains(null));
+
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(0l));
+	}
+
+	public void testSerialization() throws Exception
+	{
+		LongKeyingSet<Long> set = new IdSet();
+		for (long key = 0; key < 10000; key++)
+		{
+			set.add(key * 31);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(set);
+		out.close();
+
+		// 8 bytes per key plus class descriptors
+		assertTrue(bytes.size() < 10000 * 8 + 1000);
+
+		@SuppressWarnings("unchecked")
+		LongKeyingSet<Long> copy = (LongKeyingSet<Long>)new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(10000, copy.size());
+		for (long key = 0; key < 10000; key++)
+		{
+			assertTrue(copy.contains(key * 31));
+			assertFalse(copy.contains(key * 31 + 1));
+		}
+	}
+
+	private static class IdSet extends LongKeyingSet<Long>
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected long key(Long t)
+		{
+			return t;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test for {@link Notifier}.
+ */
+public class NotifierTest extends TestCase
+{
+	public void test() throws Exception
+	{
+		String token1 = Notifier.newToken();
+		String token2 = Notifier.newToken();
+		assertFalse(token1.equals(token2));
+
+		assertEquals(Collections.emptyList(), Notifier.await(Arrays.asList(token1, token2), 10));
+
+		Notifier.complete(token2);
+
+		assertEquals(Arrays.asList(token2), Notifier.await(Arrays.asList(token1, token2), 10));
+	}
+
+	public void testForget() throws Exception
+	{
+		String token = Notifier.newToken();
+		Notifier.complete(token);
+		assertEquals(Arrays.asList(token), Notifier.await(Arrays.asList(token), 10));
+
+		Notifier.forget(Arrays.asList(token));
+		assertEquals(Collections.emptyList(), Notifier.await(Arrays.asList(token), 10));
+	}
+
+	public void testWait() throws Exception
+	{
+		final String token = Notifier.newToken();
+
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Thread.sleep(100);
+				}
+				catch (InterruptedException ex)
+				{
+				}
+				Notifier.complete(token);
+			}
+		};
+		thread.start();
+
+		List<String> completed = Notifier.await(Arrays.asList(token), 10000);
+		assertEquals(Arrays.asList(token), completed);
+
+		thread.join();
+	}
+}
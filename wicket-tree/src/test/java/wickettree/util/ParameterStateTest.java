@@ -0,0 +1,133 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
+/**
+ * Test for {@link ParameterState}.
+ * 
+ * @author Sven Meier
+ */
+public class ParameterStateTest extends TestCase
+{
+	public void testToggle() throws Exception
+	{
+		ParameterState<String> state = new StringState();
+
+		PageParameters parameters = new PageParameters();
+		parameters.set("other", "value");
+
+		parameters = state.toggle("A", parameters);
+		assertEquals("value", parameters.get("other").toString());
+
+		state.read(parameters);
+		assertTrue(state.contains("A"));
+		assertFalse(state.contains("AA"));
+
+		parameters = state.toggle("AA", parameters);
+		// unchanged
+		assertFalse(state.contains("AA"));
+
+		state.read(parameters);
+		assertTrue(state.contains("A"));
+		assertTrue(state.contains("AA"));
+		assertEquals(2, state.size());
+
+		parameters = state.toggle("AA", parameters);
+		state.read(parameters);
+		assertTrue(state.contains("A"));
+		assertFalse(state.contains("AA"));
+
+		parameters = state.toggle("A", parameters);
+		assertTrue(parameters.get("state").isNull());
+		assertEquals("value", parameters.get("other").toString());
+
+		state.read(parameters);
+		assertTrue(state.isEmpty());
+
+		state.read(null);
+		assertTrue(state.isEmpty());
+	}
+
+	public void testEncode() throws Exception
+	{
+		SortedSet<String> keys = new TreeSet<String>();
+		keys.add("");
+		keys.add("A");
+		keys.add("AB");
+		keys.add("ABäö");
+		keys.add("AB𝄞");
+		keys.add("AB𝄟");
+		keys.add("B");
+
+		assertEquals(new ArrayList<String>(keys), ParameterState.decode(ParameterState
+				.encode(keys)));
+	}
+
+	public void testMalformed() throws Exception
+	{
+		assertTrue(ParameterState.decode("_____").isEmpty());
+		assertTrue(ParameterState.decode("").isEmpty());
+
+		ParameterState<String> state = new StringState();
+		state.read(new PageParameters().set("state", "@@@"));
+		assertTrue(state.isEmpty());
+	}
+
+	public void testSize() throws Exception
+	{
+		Random random = new Random(0);
+
+		SortedSet<String> keys = new TreeSet<String>();
+		while (keys.size() < 100)
+		{
+			keys.add("/folder" + random.nextInt(10) + "/folder" + random.nextInt(10));
+		}
+
+		String token = ParameterState.encode(keys);
+
+		// prefix, length and a few characters for each key
+		assertTrue(token.length() < 100 * 8);
+
+		Collection<String> decoded = ParameterState.decode(token);
+		assertEquals(new ArrayList<String>(keys), decoded);
+	}
+
+	private static class StringState extends ParameterState<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public StringState()
+		{
+			super("state");
+		}
+
+		@Override
+		protected String key(String t)
+		{
+			return t;
+		}
+	}
+}
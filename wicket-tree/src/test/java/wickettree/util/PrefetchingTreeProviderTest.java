@@ -0,0 +1,221 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+import wickettree.ITreeProvider;
+
+/**
+ * Test for {@link PrefetchingTreeProvider}.
+ */
+public class PrefetchingTreeProviderTest extends TestCase
+{
+	private List<String> loads = new ArrayList<String>();
+
+	private Set<String> failures = new HashSet<String>();
+
+	private InlineExecutor executor = new InlineExecutor();
+
+	private int detaches;
+
+	public void test() throws Exception
+	{
+		PrefetchingTreeProvider<String> provider = newProvider(1, 10);
+
+		provider.prefetch("A");
+
+		Iterator<? extends String> children = provider.getChildren("A");
+		assertEquals("AA", children.next());
+		assertEquals("AB", children.next());
+		assertFalse(children.hasNext());
+
+		assertTrue(provider.getChildren("AA").hasNext());
+		assertTrue(provider.getChildren("AB").hasNext());
+		assertEquals(3, loads.size());
+
+		provider.reset();
+
+		provider.getChildren("A");
+		assertEquals(4, loads.size());
+	}
+
+	public void testFrequency() throws Exception
+	{
+		PrefetchingTreeProvider<String> provider = newProvider(1, 1);
+
+		provider.prefetch("AB");
+		provider.getChildren("AB");
+		provider.reset();
+		loads.clear();
+
+		provider.prefetch("A");
+
+		provider.getChildren("A");
+		provider.getChildren("AB");
+		assertEquals("[A, AB]", loads.toString());
+
+		provider.getChildren("AA");
+		assertEquals("[A, AB, AA]", loads.toString());
+	}
+
+	/**
+	 * Children are loaded directly if prefetching is still in progress.
+	 */
+	public void testPending() throws Exception
+	{
+		executor = new InlineExecutor(true);
+
+		PrefetchingTreeProvider<String> provider = newProvider(1, 10);
+
+		provider.prefetch("A");
+		provider.getChildren("A");
+		assertEquals("[A]", loads.toString());
+
+		provider.getChildren("AA");
+		assertEquals("[A, AA]", loads.toString());
+
+		// cancelled
+		executor.run();
+		assertEquals("[A, AA, AB]", loads.toString());
+
+		provider.getChildren("AB");
+		assertEquals("[A, AA, AB]", loads.toString());
+	}
+
+	/**
+	 * Children are loaded directly if prefetching failed.
+	 */
+	public void testFailure() throws Exception
+	{
+		PrefetchingTreeProvider<String> provider = newProvider(1, 10);
+
+		failures.add("AA");
+
+		provider.prefetch("A");
+		provider.getChildren("A");
+		assertEquals("[A, AB]", loads.toString());
+
+		assertTrue(provider.getChildren("AA").hasNext());
+		assertEquals("[A, AB, AA]", loads.toString());
+	}
+
+	/**
+	 * Only expansions in the current request are prefetched.
+	 */
+	public void testDetach() throws Exception
+	{
+		PrefetchingTreeProvider<String> provider = newProvider(1, 10);
+
+		provider.prefetch("A");
+		provider.detach();
+
+		provider.getChildren("A");
+		assertEquals("[A]", loads.toString());
+	}
+
+	/**
+	 * Prefetching with a separate provider.
+	 */
+	public void testLoader() throws Exception
+	{
+		PrefetchingTreeProvider<String> provider = new PrefetchingTreeProvider<String>(
+				new StringProvider(), new StringProvider(), 1, 10)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected ExecutorService getExecutor()
+			{
+				return executor;
+			}
+		};
+
+		provider.prefetch("A");
+		provider.getChildren("A");
+		assertEquals("[A, AA, AB]", loads.toString());
+		assertEquals(2, detaches);
+
+		Iterator<? extends String> children = provider.getChildren("AA");
+		assertEquals("AAA", children.next());
+		assertEquals("AAB", children.next());
+		assertEquals("[A, AA, AB]", loads.toString());
+	}
+
+	private PrefetchingTreeProvider<String> newProvider(int depth, int breadth)
+	{
+		return new PrefetchingTreeProvider<String>(new StringProvider(), depth, breadth)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected ExecutorService getExecutor()
+			{
+				return executor;
+			}
+		};
+	}
+
+	private class StringProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			return object.length() < 3;
+		}
+
+		public Iterator<? extends String> getChildren(String object)
+		{
+			if (failures.remove(object))
+			{
+				throw new IllegalStateException();
+			}
+
+			loads.add(object);
+
+			List<String> list = new ArrayList<String>();
+			list.add(object + "A");
+			list.add(object + "B");
+			return list.iterator();
+		}
+
+		public IModel<String> model(String object)
+		{
+			return Model.of(object);
+		}
+
+		public void detach()
+		{
+			detaches++;
+		}
+	}
+}
@@ -15,6 +15,10 @@
  */
 package wickettree.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -23,7 +27,9 @@ import java.util.List;
 import junit.framework.TestCase;
 
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
 
+import wickettree.IKeyingTreeProvider;
 import wickettree.ITreeProvider;
 
 /**
@@ -79,6 +85,69 @@ public class ProviderSubsetTest extends TestCase
 		assertTrue(subset.contains("AAA"));
 	}
 
+	public void testKeying() throws Exception
+	{
+		ProviderSubset<String> subset = new ProviderSubset<String>(new KeyingProvider());
+
+		subset.add("A");
+		subset.add("AA");
+		assertFalse(subset.add("A"));
+		assertEquals(3, models.size());
+		assertTrue(models.get(2).isDetached());
+
+		assertTrue(subset.contains("A"));
+		assertFalse(subset.contains("B"));
+		assertTrue(subset.remove("AA"));
+		assertFalse(subset.remove("AA"));
+		assertEquals(1, subset.size());
+
+		// no models created for lookups
+		assertEquals(3, models.size());
+
+		Iterator<String> iterator = subset.iterator();
+		assertEquals("A", iterator.next());
+		assertFalse(iterator.hasNext());
+	}
+
+	public void testSerialization() throws Exception
+	{
+		ProviderSubset<String> subset = new ProviderSubset<String>(
+				new SerializableProvider());
+		subset.add("A");
+		subset.add("B");
+
+		ProviderSubset<String> copy = copy(subset);
+		assertEquals(2, copy.size());
+		assertTrue(copy.contains("A"));
+		assertTrue(copy.contains("B"));
+		assertFalse(copy.contains("C"));
+
+		ProviderSubset<String> keying = new ProviderSubset<String>(
+				new SerializableKeyingProvider());
+		keying.add("A");
+		keying.add("B");
+
+		copy = copy(keying);
+		assertEquals(2, copy.size());
+		assertTrue(copy.contains("A"));
+		assertTrue(copy.contains("B"));
+		assertFalse(copy.contains("C"));
+		assertTrue(copy.remove("A"));
+		assertEquals(1, copy.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T copy(T t) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(t);
+		out.close();
+
+		return (T)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+				.readObject();
+	}
+
 	private class StringModel implements IModel<String>
 	{
 
@@ -156,4 +225,52 @@ public class ProviderSubsetTest extends TestCase
 		{
 		}
 	}
+
+	private class KeyingProvider extends EmptyProvider implements IKeyingTreeProvider<String>
+	{
+		public Object key(String string)
+		{
+			return string;
+		}
+	}
+
+	private static class SerializableProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<String> getRoots()
+		{
+			return new ArrayList<String>().iterator();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			return false;
+		}
+
+		public Iterator<String> getChildren(String string)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public IModel<String> model(String string)
+		{
+			return Model.of(string);
+		}
+
+		public void detach()
+		{
+		}
+	}
+
+	private static class SerializableKeyingProvider extends SerializableProvider implements
+			IKeyingTreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Object key(String string)
+		{
+			return string;
+		}
+	}
 }
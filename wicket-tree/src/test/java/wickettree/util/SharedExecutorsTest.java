@@ -0,0 +1,44 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.concurrent.ExecutorService;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.util.tester.WicketTester;
+
+/**
+ * Test for {@link SharedExecutors}.
+ */
+public class SharedExecutorsTest extends TestCase
+{
+	public void testShutdown() throws Exception
+	{
+		ExecutorService executor = SharedExecutors.get("test", 1);
+		assertSame(executor, SharedExecutors.get("test", 1));
+
+		// shuts down on destroy of application
+		new WicketTester().destroy();
+		assertTrue(executor.isShutdown());
+
+		ExecutorService restarted = SharedExecutors.get("test", 1);
+		assertNotSame(executor, restarted);
+		assertFalse(restarted.isShutdown());
+
+		SharedExecutors.shutdown();
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+import wickettree.ITreeProvider;
+
+/**
+ * Test for {@link SortingTreeProvider}.
+ */
+public class SortingTreeProviderTest extends TestCase
+{
+	private int children;
+
+	private int comparisons;
+
+	private List<Integer> numbers = new ArrayList<Integer>();
+
+	private SortingTreeProvider<Integer> provider = new SortingTreeProvider<Integer>(
+			new NumberProvider())
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected Comparator<Integer> getComparator(final SortParam param)
+		{
+			return new Comparator<Integer>()
+			{
+				public int compare(Integer i1, Integer i2)
+				{
+					comparisons++;
+
+					int compare;
+					if ("div".equals(param.getProperty()))
+					{
+						compare = (i1 / 1000) - (i2 / 1000);
+					}
+					else
+					{
+						compare = (i1 % 1000) - (i2 % 1000);
+					}
+					return param.isAscending() ? compare : -compare;
+				}
+			};
+		}
+	};
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		for (int i = 0; i < 10000; i++)
+		{
+			numbers.add(i);
+		}
+		Collections.shuffle(numbers);
+	}
+
+	public void testUnsorted() throws Exception
+	{
+		assertEquals(numbers.get(0), provider.getChildren(-1).next());
+		assertEquals(numbers.get(0), provider.getChildren(-1).next());
+		assertEquals(2, children);
+	}
+
+	public void testSorted() throws Exception
+	{
+		provider.setSort("", true);
+
+		Iterator<? extends Integer> iterator = provider.getChildren(-1);
+		int previous = -1;
+		int count = 0;
+		while (iterator.hasNext())
+		{
+			int next = iterator.next();
+			assertTrue(previous % 1000 <= next % 1000);
+			if (previous % 1000 == next % 1000)
+			{
+				// stable
+				assertTrue(numbers.indexOf(previous) < numbers.indexOf(next));
+			}
+			previous = next;
+			count++;
+		}
+		assertEquals(10000, count);
+
+		provider.setSort("", false);
+		assertEquals(999, provider.getChildren(-1).next() % 1000);
+
+		provider.setSort("", true);
+		assertEquals(0, provider.getChildren(-1).next() % 1000);
+		assertEquals(2, children);
+
+		provider.invalidate(-1);
+		provider.getChildren(-1);
+		assertEquals(3, children);
+
+		provider.detach();
+		provider.getChildren(-1);
+		assertEquals(4, children);
+	}
+
+	public void testDetached() throws Exception
+	{
+		provider.setSort("", true);
+
+		List<Integer> sorted = new ArrayList<Integer>();
+		Iterator<? extends Integer> iterator = provider.getChildren(-1);
+		while (iterator.hasNext())
+		{
+			sorted.add(iterator.next());
+		}
+
+		provider.detach();
+		comparisons = 0;
+
+		iterator = provider.getChildren(-1);
+		for (Integer number : sorted)
+		{
+			assertEquals(number, iterator.next());
+		}
+		assertEquals(2, children);
+
+		// verification of the kept order only
+		assertTrue(comparisons < 10000);
+	}
+
+	public void testDetachedChanged() throws Exception
+	{
+		provider.setSort("", true);
+
+		Iterator<? extends Integer> iterator = provider.getChildren(-1);
+		for (int i = 0; i < 10; i++)
+		{
+			iterator.next();
+		}
+
+		provider.detach();
+		numbers.add(Integer.valueOf(-1));
+
+		assertEquals(Integer.valueOf(-1), provider.getChildren(-1).next());
+	}
+
+	public void testCompound() throws Exception
+	{
+		CompoundSortState state = new CompoundSortState();
+		provider.setSortState(state);
+		state.setSorts(Arrays.asList(new SortParam("mod", false), new SortParam("div", true)));
+
+		Iterator<? extends Integer> iterator = provider.getChildren(-1);
+		assertEquals(Integer.valueOf(999), iterator.next());
+		assertEquals(Integer.valueOf(1999), iterator.next());
+		assertEquals(Integer.valueOf(2999), iterator.next());
+	}
+
+	public void testPartial() throws Exception
+	{
+		provider.setSort("", true);
+
+		Iterator<? extends Integer> iterator = provider.getChildren(-1);
+		for (int i = 0; i < 10; i++)
+		{
+			assertEquals(i / 10, iterator.next() % 1000);
+		}
+
+		// heap construction and a few sift downs only
+		assertTrue(comparisons < 2 * 10000 + 10 * 2 * 14);
+	}
+
+	private class NumberProvider implements ITreeProvider<Integer>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends Integer> getRoots()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public boolean hasChildren(Integer object)
+		{
+			return object == -1;
+		}
+
+		public Iterator<? extends Integer> getChildren(Integer object)
+		{
+			children++;
+
+			return numbers.iterator();
+		}
+
+		public IModel<Integer> model(Integer object)
+		{
+			return Model.of(object);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.tester.WicketTester;
+
+import wickettree.ITreeProvider;
+import wickettree.NestedTree;
+
+/**
+ * Test for {@link TreeIndex}.
+ */
+public class TreeIndexTest extends TestCase
+{
+	private StringIndex index = new StringIndex();
+
+	public void test() throws Exception
+	{
+		index.build();
+
+		assertEquals(Arrays.asList("red one two", "red two one", "blue one two", "blue two one"),
+				index.search("one tw", 10));
+		assertEquals(Arrays.asList("red one two"), index.search("One, TW", 1));
+		assertEquals(Arrays.asList("blue one two", "blue two", "blue two one", "blue two two"),
+				index.search("blue two t", 10));
+		assertEquals(Arrays.asList(), index.search("green", 10));
+		assertEquals(Arrays.asList(), index.search(" ", 10));
+
+		assertEquals(Arrays.asList("blue", "blue two"), index.getAncestors("blue two one"));
+		assertEquals(Arrays.asList(), index.getAncestors("blue"));
+
+		Set<String> expanded = new HashSet<String>();
+		assertEquals(Arrays.asList("blue one two", "blue two one"), index.reveal("blue one tw",
+				10, expanded));
+		assertEquals(new HashSet<String>(Arrays.asList("blue", "blue one", "blue two")),
+				expanded);
+	}
+
+	public void testUpdate() throws Exception
+	{
+		index.build();
+
+		index.remove("red two");
+		assertEquals(Arrays.asList("red one two", "blue one two", "blue two one"), index.search(
+				"one tw", 10));
+
+		index.add("red", "red two");
+		assertEquals(Arrays.asList("red one two", "blue one two", "blue two one", "red two one"),
+				index.search("one tw", 10));
+		assertEquals(Arrays.asList("red", "red two"), index.getAncestors("red two one"));
+
+		index.labels.add("blue one");
+		index.update("blue one");
+		assertEquals(Arrays.asList("blue one"), index.search("relabeled", 10));
+		assertEquals(Arrays.asList("blue one one", "blue one two", "blue two one"), index
+				.search("blue one", 10));
+	}
+
+	public void testAddIndexed() throws Exception
+	{
+		index.build();
+
+		index.add("red", "red two");
+		index.add("red", "red two");
+		assertEquals(Arrays.asList("red one two", "red two", "red two one", "red two two"),
+				index.search("red two", 10));
+	}
+
+	public void testRemove() throws Exception
+	{
+		index.build();
+
+		index.remove("red");
+		assertEquals(Arrays.asList("blue one", "blue one one", "blue one two"), index.search(
+				"one", 3));
+
+		// compacted
+		index.remove("blue one");
+		assertEquals(Arrays.asList("blue two one", "blue two two"), index.search("two", 10)
+				.subList(1, 3));
+		assertEquals(Arrays.asList(), index.search("red", 10));
+		assertEquals(Arrays.asList("blue", "blue two"), index.getAncestors("blue two one"));
+
+		index.add("blue", "blue one");
+		assertEquals(Arrays.asList("blue", "blue one"), index.getAncestors("blue one two"));
+		assertEquals(Arrays.asList("blue two one", "blue one two"), index.search("one two", 10));
+	}
+
+	public void testRevealTree() throws Exception
+	{
+		index.build();
+
+		WicketTester tester = new WicketTester();
+		try
+		{
+			ProviderSubset<String> expanded = new ProviderSubset<String>(new StringProvider());
+			expanded.add("blue");
+
+			final List<String> updated = new ArrayList<String>();
+			NestedTree<String> tree = new NestedTree<String>("tree", new StringProvider(),
+					expanded.createModel())
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Component newContentComponent(String id, IModel<String> model)
+				{
+					return new Label(id, model);
+				}
+
+				@Override
+				public void updateBranch(String t, AjaxRequestTarget target)
+				{
+					updated.add(t);
+				}
+			};
+
+			assertEquals(Arrays.asList("red one", "red one one"), index.reveal("red one one", 2,
+					tree));
+			assertEquals(Arrays.asList("red"), updated);
+
+			assertEquals(Arrays.asList("blue one", "blue one one", "blue one two"), index
+					.reveal("blue one one", 3, tree));
+			assertEquals(Arrays.asList("red", "blue one"), updated);
+			assertEquals(new HashSet<String>(Arrays.asList("red", "red one", "blue",
+					"blue one")), expanded);
+		}
+		finally
+		{
+			tester.destroy();
+		}
+	}
+
+	private class StringIndex extends TreeIndex<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private Set<String> labels = new HashSet<String>();
+
+		public StringIndex()
+		{
+			super(new StringProvider());
+		}
+
+		@Override
+		protected String getLabel(String t)
+		{
+			return labels.contains(t) ? "relabeled" : t;
+		}
+	}
+
+	private class StringProvider implements ITreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Iterator<? extends String> getRoots()
+		{
+			return Arrays.asList("red", "blue").iterator();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			return object.split(" ").length < 3;
+		}
+
+		public Iterator<? extends String> getChildren(String object)
+		{
+			List<String> list = new ArrayList<String>();
+			list.add(object + " one");
+			list.add(object + " two");
+			return list.iterator();
+		}
+
+		public IModel<String> model(String object)
+		{
+			return Model.of(object);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
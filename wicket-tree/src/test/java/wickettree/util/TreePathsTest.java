@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+import wickettree.IParentTreeProvider;
+
+/**
+ * Test for {@link TreePaths}.
+ */
+public class TreePathsTest extends TestCase
+{
+	private int parents;
+
+	private PathProvider provider = new PathProvider();
+
+	public void testPath() throws Exception
+	{
+		assertEquals(Arrays.asList("A", "A.B", "A.B.C"), TreePaths.getPath(provider, "A.B.C"));
+		assertEquals(Arrays.asList("A"), TreePaths.getPath(provider, "A"));
+		assertEquals(4, parents);
+	}
+
+	public void testDepth() throws Exception
+	{
+		assertEquals(2, TreePaths.getDepth(provider, "A.B.C"));
+		assertEquals(0, TreePaths.getDepth(provider, "A"));
+	}
+
+	public void testDescendant() throws Exception
+	{
+		assertTrue(TreePaths.isDescendant(provider, "A.B.C", "A"));
+		assertTrue(TreePaths.isDescendant(provider, "A.B.C", "A.B"));
+		assertFalse(TreePaths.isDescendant(provider, "A.B.C", "A.B.C"));
+		assertFalse(TreePaths.isDescendant(provider, "A.B.C", "A.C"));
+		assertFalse(TreePaths.isDescendant(provider, "A", "A.B"));
+	}
+
+	private class PathProvider implements IParentTreeProvider<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public String getParent(String object)
+		{
+			parents++;
+
+			int index = object.lastIndexOf('.');
+			return index == -1 ? null : object.substring(0, index);
+		}
+
+		public Iterator<? extends String> getRoots()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public boolean hasChildren(String object)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public Iterator<? extends String> getChildren(String object)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public IModel<String> model(String object)
+		{
+			return Model.of(object);
+		}
+
+		public void detach()
+		{
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2009 Sven Meier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package wickettree.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Test for {@link Varints}.
+ * 
+ * @author Sven Meier
+ */
+public class VarintsTest extends TestCase
+{
+	private static final long[] LONGS = { 0, 1, -1, 63, -64, 64, 127, 128, 300, -300,
+			Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+
+	public void testLong() throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		for (long value : LONGS)
+		{
+			Varints.writeLong(out, value);
+		}
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for (long value : LONGS)
+		{
+			assertEquals(value, Varints.readLong(in));
+		}
+	}
+
+	public void testLength() throws Exception
+	{
+		assertEquals(1, length(0));
+		assertEquals(1, length(63));
+		assertEquals(1, length(-64));
+		assertEquals(2, length(64));
+		assertEquals(2, length(8191));
+		assertEquals(3, length(8192));
+		assertEquals(10, length(Long.MIN_VALUE));
+	}
+
+	public void testKey() throws Exception
+	{
+		Object[] keys = { Long.valueOf(42), Integer.valueOf(-42), "", "key", Boolean.TRUE, null };
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		for (Object key : keys)
+		{
+			Varints.writeKey(out, key);
+		}
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for (Object key : keys)
+		{
+			assertEquals(key, Varints.readKey(in));
+		}
+	}
+
+	public void testLongStringKey() throws Exception
+	{
+		StringBuilder builder = new StringBuilder();
+		while (builder.length() < 70000)
+		{
+			builder.append("key\u00e4\u20ac\ud834\udd1e");
+		}
+		String key = builder.toString();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		Varints.writeKey(out, key);
+		Varints.writeKey(out, "next");
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(key, Varints.readKey(in));
+		assertEquals("next", Varints.readKey(in));
+	}
+
+	private int length(long value) throws Exception
+	{
+		ByteArrayOutputStream empty = new ByteArrayOutputStream();
+		new ObjectOutputStream(empty).close();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		Varints.writeLong(out, value);
+		out.close();
+
+		// minus stream header and block data header
+		return bytes.size() - empty.size() - 2;
+	}
+}